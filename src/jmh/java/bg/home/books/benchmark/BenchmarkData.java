@@ -0,0 +1,29 @@
+package bg.home.books.benchmark;
+
+import bg.home.books.model.entity.dto.BookDTO;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Общи тестови данни за бенчмарковете
+final class BenchmarkData {
+
+    private static final String[] AUTHORS = {
+            "Иван Вазов", "Елин Пелин", "Йордан Йовков", "Димитър Димов", "Николай Хайтов"
+    };
+
+    private BenchmarkData() {
+    }
+
+    static String author(int index) {
+        return AUTHORS[index % AUTHORS.length];
+    }
+
+    static List<BookDTO> books(int count) {
+        List<BookDTO> books = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            books.add(new BookDTO((long) i + 1, "Заглавие на книга номер " + i, "bench-" + i, author(i), 0L));
+        }
+        return books;
+    }
+}
@@ -0,0 +1,98 @@
+package bg.home.books.benchmark;
+
+import bg.home.books.BooksApplication;
+import bg.home.books.model.entity.dto.AuthorDTO;
+import bg.home.books.model.entity.dto.BookDTO;
+import bg.home.books.service.BookService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Основните пътища на BookService срещу вградена H2 база с каталог с различен размер.
+// Кешът за единични книги е изключен, за да се мери достъпът до базата.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BookServiceBenchmark {
+
+    @Param({"1000", "100000"})
+    public int catalogSize;
+
+    private final AtomicLong createdBooks = new AtomicLong();
+
+    private ConfigurableApplicationContext context;
+    private BookService bookService;
+    private long minId;
+    private long maxId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new SpringApplicationBuilder(BooksApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties(
+                        "spring.datasource.url=jdbc:h2:mem:books-bench;DB_CLOSE_DELAY=-1",
+                        "spring.datasource.driverClassName=org.h2.Driver",
+                        "spring.datasource.username=sa",
+                        "spring.datasource.password=",
+                        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+                        "spring.jpa.hibernate.ddl-auto=create-drop",
+                        "spring.jpa.properties.hibernate.format_sql=false",
+                        "logging.level.org.hibernate.SQL=WARN",
+                        "logging.level.org.hibernate.orm.jdbc.bind=WARN",
+                        "books.book-cache.enabled=false")
+                .run();
+        bookService = context.getBean(BookService.class);
+
+        bookService.importBooks(BenchmarkData.books(catalogSize)); // Масовият импорт пълни каталога бързо
+
+        List<BookDTO> all = bookService.getAllBooks();
+        minId = all.get(0).getId();
+        maxId = all.get(all.size() - 1).getId();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<BookDTO> getAllBooks() {
+        return bookService.getAllBooks();
+    }
+
+    @Benchmark
+    public Optional<BookDTO> findBookById() {
+        return bookService.findBookById(ThreadLocalRandom.current().nextLong(minId, maxId + 1));
+    }
+
+    @Benchmark
+    public BookDTO createBook() {
+        long n = createdBooks.incrementAndGet();
+        return bookService.createBook(new BookDTO()
+                .setTitle("Нова книга " + n)
+                .setIsbn("created-" + n)
+                .setAuthor(new AuthorDTO().setName(BenchmarkData.author((int) n))));
+    }
+}
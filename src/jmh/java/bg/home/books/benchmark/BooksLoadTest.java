@@ -0,0 +1,145 @@
+package bg.home.books.benchmark;
+
+import bg.home.books.BooksApplication;
+import bg.home.books.service.BookService;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+// Товарен тест: едно и също натоварване срещу приложението с платформени и с виртуални нишки.
+// Tomcat е ограничен до малко нишки, а клиентите са повече, за да проличи изчерпването им.
+// Стартиране: ./gradlew loadTest [-PloadTestArgs="<клиенти> <секунди>"]
+public final class BooksLoadTest {
+
+    private static final int CATALOG_SIZE = 10_000;
+    private static final int TOMCAT_MAX_THREADS = 50;
+
+    private BooksLoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        Duration duration = Duration.ofSeconds(args.length > 1 ? Long.parseLong(args[1]) : 20);
+
+        Result platform = run(false, clients, duration);
+        System.out.println(platform);
+
+        if (Runtime.version().feature() < 21) {
+            System.out.println("virtual threads: skipped, Java " + Runtime.version().feature() + " has no virtual threads");
+            return;
+        }
+        Result virtual = run(true, clients, duration);
+        System.out.println(virtual);
+    }
+
+    private static Result run(boolean virtualThreads, int clients, Duration duration) throws Exception {
+        String mode = virtualThreads ? "virtual" : "platform";
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(BooksApplication.class)
+                .properties(
+                        "server.port=0",
+                        "server.tomcat.threads.max=" + TOMCAT_MAX_THREADS,
+                        "spring.threads.virtual.enabled=" + virtualThreads,
+                        "books.datasource.gate.enabled=true",
+                        "spring.datasource.url=jdbc:h2:mem:books-load-" + mode + ";DB_CLOSE_DELAY=-1",
+                        "spring.datasource.driverClassName=org.h2.Driver",
+                        "spring.datasource.username=sa",
+                        "spring.datasource.password=",
+                        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+                        "spring.jpa.hibernate.ddl-auto=create-drop",
+                        "spring.jpa.properties.hibernate.format_sql=false",
+                        "logging.level.org.hibernate.SQL=WARN",
+                        "logging.level.org.hibernate.orm.jdbc.bind=WARN",
+                        "books.book-cache.enabled=false",
+                        // Мерим нишките, а не адаптивния лимит - с него повечето заявки биха получили 429/503
+                        "books.admission.enabled=false")
+                .run();
+        try {
+            context.getBean(BookService.class).importBooks(BenchmarkData.books(CATALOG_SIZE));
+            int port = context.getEnvironment().getRequiredProperty("local.server.port", Integer.class);
+            return load(mode, "http://localhost:" + port + "/api/books", clients, duration);
+        } finally {
+            context.close();
+        }
+    }
+
+    // Всеки клиент чете случайна страница от каталога, докато изтече времето, и записва латентността си.
+    // Отказите (429/503) и грешките се броят отделно - не влизат в пропускателността и p99.
+    private static Result load(String mode, String baseUrl, int clients, Duration duration) throws Exception {
+        HttpClient http = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+        ExecutorService pool = Executors.newFixedThreadPool(clients);
+        long deadline = System.nanoTime() + duration.toNanos();
+
+        List<Future<ClientStats>> futures = new ArrayList<>(clients);
+        for (int i = 0; i < clients; i++) {
+            futures.add(pool.submit(() -> {
+                ClientStats stats = new ClientStats();
+                while (System.nanoTime() < deadline) {
+                    long after = ThreadLocalRandom.current().nextLong(CATALOG_SIZE);
+                    HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "?limit=50&after=" + after))
+                            .timeout(Duration.ofSeconds(30))
+                            .build();
+                    long start = System.nanoTime();
+                    try {
+                        int status = http.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+                        if (status == 200) {
+                            stats.latencies.add(System.nanoTime() - start);
+                        } else if (status == 429 || status == 503) {
+                            stats.rejected++;
+                        } else {
+                            stats.failed++;
+                        }
+                    } catch (IOException e) {
+                        stats.failed++; // Изтекло време или затворена връзка
+                    }
+                }
+                return stats;
+            }));
+        }
+
+        List<Long> all = new ArrayList<>();
+        int rejected = 0;
+        int failed = 0;
+        for (Future<ClientStats> future : futures) {
+            ClientStats stats = future.get();
+            all.addAll(stats.latencies);
+            rejected += stats.rejected;
+            failed += stats.failed;
+        }
+        pool.shutdown();
+
+        Collections.sort(all);
+        double throughput = all.size() / (double) duration.toSeconds();
+        long p99 = all.isEmpty() ? 0 : all.get((int) Math.ceil(all.size() * 0.99) - 1);
+        return new Result(mode, clients, all.size(), rejected, failed, throughput, Duration.ofNanos(p99));
+    }
+
+    // Резултатите на един клиент (само неговата нишка ги пише)
+    private static final class ClientStats {
+
+        private final List<Long> latencies = new ArrayList<>();
+        private int rejected;
+        private int failed;
+    }
+
+    private record Result(String mode, int clients, int requests, int rejected, int failed, double throughput,
+                          Duration p99) {
+        @Override
+        public String toString() {
+            return String.format("%-8s threads: %d clients, %d requests, %.1f req/s, p99 %d ms, %d rejected, %d failed",
+                    mode, clients, requests, throughput, p99.toMillis(), rejected, failed);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package bg.home.books.service.impl;
+
+import bg.home.books.model.entity.AuthorEntity;
+import bg.home.books.model.entity.BookEntity;
+import bg.home.books.model.entity.dto.BookDTO;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// Цената на преобразуването BookEntity -> BookDTO (вика се при всяко създаване и редакция)
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BookMappingBenchmark {
+
+    private BookEntity book;
+
+    @Setup
+    public void setUp() {
+        AuthorEntity author = new AuthorEntity().setId(1L).setName("Иван Вазов");
+        book = new BookEntity()
+                .setId(42L)
+                .setTitle("Под Игото")
+                .setIsbn("978-954-00-0000-1")
+                .setVersion(3L)
+                .setAuthor(author);
+    }
+
+    @Benchmark
+    public BookDTO mapBookToDTO() {
+        return BookServiceImpl.mapBookToDTO(book, book.getAuthor().getName());
+    }
+}
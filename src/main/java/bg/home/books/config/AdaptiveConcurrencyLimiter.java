@@ -0,0 +1,147 @@
+package bg.home.books.config;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Адаптивен лимит на едновременните заявки (градиентен алгоритъм, близък до Vegas):
+// сравнява краткосрочното време за отговор с дългосрочното. Докато са близки, лимитът расте с √limit;
+// когато краткосрочното се покачи (базата се бави и заявките чакат), лимитът пада пропорционално.
+// Над лимита заявката чака в къса ограничена опашка, след което се отказва веднага.
+public class AdaptiveConcurrencyLimiter {
+
+    private static final int SHORT_WINDOW = 10; // Заявки в краткосрочната средна стойност
+    private static final int LONG_WINDOW = 600; // Заявки в дългосрочната средна стойност
+    private static final double RTT_TOLERANCE = 1.5; // Колко по-бавно от обичайното още не намалява лимита
+    private static final double SMOOTHING = 0.2;
+
+    public enum Result {
+        ACQUIRED,
+        QUEUE_FULL, // Лимитът е достигнат и опашката е пълна - отказ без чакане
+        TIMED_OUT // Чакането в опашката е изтекло
+    }
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final int maxQueued;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition released = lock.newCondition();
+    private double limit;
+    private int inFlight;
+    private int queued;
+    private double shortRtt;
+    private double longRtt;
+
+    public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, int maxQueued) {
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.maxQueued = maxQueued;
+    }
+
+    // Заема място; при ACQUIRED извикващият трябва да извика release() с измереното време
+    public Result acquire(Duration maxWait) {
+        lock.lock();
+        try {
+            if (inFlight < (int) limit) {
+                inFlight++;
+                return Result.ACQUIRED;
+            }
+            if (queued >= maxQueued) {
+                return Result.QUEUE_FULL;
+            }
+            queued++;
+            try {
+                long nanos = maxWait.toNanos();
+                while (inFlight >= (int) limit) {
+                    if (nanos <= 0) {
+                        return Result.TIMED_OUT;
+                    }
+                    nanos = released.awaitNanos(nanos);
+                }
+                inFlight++;
+                return Result.ACQUIRED;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return Result.TIMED_OUT;
+            } finally {
+                queued--;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Освобождава мястото и обновява лимита с времето за обработка на заявката
+    public void release(long rtt, TimeUnit unit) {
+        lock.lock();
+        try {
+            update(unit.toNanos(rtt), inFlight);
+            inFlight--;
+            released.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Освобождава мястото, без да обновява лимита (за заявки, чието време не е сигнал за натоварването)
+    public void release() {
+        lock.lock();
+        try {
+            inFlight--;
+            released.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getLimit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getQueued() {
+        lock.lock();
+        try {
+            return queued;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void update(long rttNanos, int inFlightAtSample) {
+        double rtt = Math.max(1, rttNanos);
+        shortRtt = shortRtt == 0 ? rtt : shortRtt + (rtt - shortRtt) / SHORT_WINDOW;
+        longRtt = longRtt == 0 ? rtt : longRtt + (rtt - longRtt) / LONG_WINDOW;
+        if (longRtt / shortRtt > 2) {
+            longRtt *= 0.95; // След дълго претоварване обичайното време се връща към новото ниво
+        }
+        if (inFlightAtSample < limit / 2) {
+            return; // Натоварването не стига до лимита - няма сигнал дали може да се вдигне
+        }
+
+        double gradient = Math.max(0.5, Math.min(1.0, RTT_TOLERANCE * longRtt / shortRtt));
+        double newLimit = limit * gradient + Math.sqrt(limit); // √limit - място за опашката при стабилно време
+        newLimit = limit * (1 - SMOOTHING) + newLimit * SMOOTHING;
+        double previous = limit;
+        limit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+        if ((int) limit > (int) previous) {
+            released.signalAll(); // Лимитът е вдигнат - чакащите може да влязат
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package bg.home.books.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+import java.time.Duration;
+
+// Адаптивен лимит на едновременните заявки към /api/*, за да остане пропускателността стабилна при претоварване
+@Configuration
+@ConditionalOnProperty(name = "books.admission.enabled", havingValue = "true", matchIfMissing = true)
+public class AdmissionControlConfig {
+
+    @Bean
+    FilterRegistrationBean<AdmissionControlFilter> admissionControlFilter(
+            MeterRegistry meterRegistry,
+            @Value("${books.admission.reads.initial-limit:20}") int readInitialLimit,
+            @Value("${books.admission.reads.min-limit:4}") int readMinLimit,
+            @Value("${books.admission.reads.max-limit:200}") int readMaxLimit,
+            @Value("${books.admission.writes.initial-limit:10}") int writeInitialLimit,
+            @Value("${books.admission.writes.min-limit:2}") int writeMinLimit,
+            @Value("${books.admission.writes.max-limit:50}") int writeMaxLimit,
+            @Value("${books.admission.queue-size:10}") int queueSize,
+            @Value("${books.admission.max-wait:50ms}") Duration maxWait,
+            @Value("${books.admission.retry-after:1s}") Duration retryAfter) {
+        AdmissionControlFilter filter = new AdmissionControlFilter(
+                new AdaptiveConcurrencyLimiter(readInitialLimit, readMinLimit, readMaxLimit, queueSize),
+                new AdaptiveConcurrencyLimiter(writeInitialLimit, writeMinLimit, writeMaxLimit, queueSize),
+                maxWait, retryAfter, meterRegistry);
+        FilterRegistrationBean<AdmissionControlFilter> registration = new FilterRegistrationBean<>(filter);
+        // След броенето на заявките (QueryBudgetFilter), но преди всичко, което работи с базата
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 15);
+        return registration;
+    }
+}
@@ -0,0 +1,149 @@
+package bg.home.books.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Пропуска към API-то само толкова заявки, колкото адаптивният лимит позволява - отделно за четене и за запис,
+// за да не спират бавните записи четенията. Над лимита и пълна опашка - веднага 429, а изтекло чакане в опашката - 503;
+// и двата отговора носят Retry-After. Така при бавна база заявките не се трупат пред пула с връзки.
+public class AdmissionControlFilter extends OncePerRequestFilter {
+
+    static final String METRIC_PREFIX = "books.admission";
+
+    // Абонаментът за промени е дълга връзка, а не работа - не заема място в лимита
+    private static final String EVENTS_PATH = "/api/books/events";
+    // Експортът тече минути: едно негово време би свалило лимита към минимума, а мястото му би стояло заето
+    private static final String EXPORT_PATH = "/api/books/export";
+    private static final Set<String> READ_METHODS = Set.of("GET", "HEAD", "OPTIONS");
+
+    private final AdaptiveConcurrencyLimiter reads;
+    private final AdaptiveConcurrencyLimiter writes;
+    private final Duration maxWait;
+    private final String retryAfter;
+    private final MeterRegistry meterRegistry;
+
+    public AdmissionControlFilter(AdaptiveConcurrencyLimiter reads, AdaptiveConcurrencyLimiter writes,
+                                  Duration maxWait, Duration retryAfter, MeterRegistry meterRegistry) {
+        this.reads = reads;
+        this.writes = writes;
+        this.maxWait = maxWait;
+        this.retryAfter = Long.toString(Math.max(1, retryAfter.toSeconds()));
+        this.meterRegistry = meterRegistry;
+        registerGauges("read", reads);
+        registerGauges("write", writes);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        return !path.startsWith("/api/") || path.equals(EVENTS_PATH) || path.equals(EXPORT_PATH);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        boolean read = READ_METHODS.contains(request.getMethod());
+        AdaptiveConcurrencyLimiter limiter = read ? reads : writes;
+        String budget = read ? "read" : "write";
+
+        AdaptiveConcurrencyLimiter.Result result = limiter.acquire(maxWait);
+        if (result != AdaptiveConcurrencyLimiter.Result.ACQUIRED) {
+            Counter.builder(METRIC_PREFIX + ".rejected")
+                    .description("Requests rejected by the concurrency limit")
+                    .tag("budget", budget)
+                    .tag("reason", result.name().toLowerCase())
+                    .register(meterRegistry)
+                    .increment();
+            response.setHeader(HttpHeaders.RETRY_AFTER, retryAfter);
+            // Само статус и заглавка, без страница за грешка - отказът трябва да е по-евтин от обслужването
+            response.setStatus(result == AdaptiveConcurrencyLimiter.Result.QUEUE_FULL
+                    ? HttpStatus.TOO_MANY_REQUESTS.value()
+                    : HttpStatus.SERVICE_UNAVAILABLE.value());
+            return;
+        }
+
+        long start = System.nanoTime();
+        boolean async = false;
+        try {
+            filterChain.doFilter(request, response);
+            async = request.isAsyncStarted();
+            if (async) {
+                // Асинхронният отговор продължава след filterChain - мястото се освобождава едва когато приключи
+                request.getAsyncContext().addListener(new ReleaseOnCompletion(limiter));
+            }
+        } finally {
+            if (!async) {
+                limiter.release(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+
+    private void registerGauges(String budget, AdaptiveConcurrencyLimiter limiter) {
+        Gauge.builder(METRIC_PREFIX + ".limit", limiter, AdaptiveConcurrencyLimiter::getLimit)
+                .description("Current adaptive concurrency limit")
+                .tag("budget", budget)
+                .register(meterRegistry);
+        Gauge.builder(METRIC_PREFIX + ".inflight", limiter, AdaptiveConcurrencyLimiter::getInFlight)
+                .description("Requests currently being processed")
+                .tag("budget", budget)
+                .register(meterRegistry);
+        Gauge.builder(METRIC_PREFIX + ".queued", limiter, AdaptiveConcurrencyLimiter::getQueued)
+                .description("Requests waiting for a free slot")
+                .tag("budget", budget)
+                .register(meterRegistry);
+    }
+
+    // Освобождава мястото точно веднъж - при край, грешка или изтекло време на асинхронния отговор.
+    // Без измерено време: продължителността на поток не казва нищо за натоварването на базата.
+    private static final class ReleaseOnCompletion implements AsyncListener {
+
+        private final AdaptiveConcurrencyLimiter limiter;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private ReleaseOnCompletion(AdaptiveConcurrencyLimiter limiter) {
+            this.limiter = limiter;
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            release();
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            release();
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            release();
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            event.getAsyncContext().addListener(this); // Нов асинхронен цикъл - слушателите трябва да се добавят наново
+        }
+
+        private void release() {
+            if (released.compareAndSet(false, true)) {
+                limiter.release();
+            }
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package bg.home.books.config;
+
+import io.micrometer.core.aop.TimedAspect;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+import javax.sql.DataSource;
+
+// Метрики: времената на HTTP заявките идват от Actuator (http.server.requests),
+// методите на BookService се мерят с @Timed, а тук се добавя броенето на SQL заявките
+@Configuration
+public class MetricsConfig {
+
+    // Нужен е, за да работи @Timed върху Spring бийновете
+    @Bean
+    TimedAspect timedAspect(MeterRegistry meterRegistry) {
+        return new TimedAspect(meterRegistry);
+    }
+
+    @Bean
+    static BeanPostProcessor queryCountingPostProcessor() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof DataSource dataSource && !(bean instanceof QueryCountingDataSource)) {
+                    return new QueryCountingDataSource(dataSource);
+                }
+                return bean;
+            }
+        };
+    }
+
+    @Bean
+    FilterRegistrationBean<QueryBudgetFilter> queryBudgetFilter(MeterRegistry meterRegistry,
+                                                                @Value("${books.metrics.query-budget:10}") int queryBudget) {
+        FilterRegistrationBean<QueryBudgetFilter> registration =
+                new FilterRegistrationBean<>(new QueryBudgetFilter(meterRegistry, queryBudget));
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 10); // Обхваща всички останали филтри
+        return registration;
+    }
+}
@@ -0,0 +1,59 @@
+package bg.home.books.config;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+
+// Брои SQL заявките на всяка HTTP заявка, записва ги като метрика по endpoint
+// и предупреждава в лога, когато заявката надхвърли бюджета (обикновено признак за N+1)
+public class QueryBudgetFilter extends OncePerRequestFilter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(QueryBudgetFilter.class);
+
+    static final String METRIC_NAME = "books.http.jdbc.statements";
+
+    private final MeterRegistry meterRegistry;
+    private final int queryBudget;
+
+    public QueryBudgetFilter(MeterRegistry meterRegistry, int queryBudget) {
+        this.meterRegistry = meterRegistry;
+        this.queryBudget = queryBudget;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        QueryCounter.start();
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            int statements = QueryCounter.stop();
+            // Шаблонът на endpoint-а (напр. /api/books/{id}), за да не се създава метрика за всяко ID
+            Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+            String uri = pattern == null ? "UNKNOWN" : pattern.toString();
+
+            DistributionSummary.builder(METRIC_NAME)
+                    .description("SQL statements issued per HTTP request")
+                    .baseUnit("statements")
+                    .tag("method", request.getMethod())
+                    .tag("uri", uri)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry)
+                    .record(statements);
+
+            if (statements > queryBudget) {
+                LOGGER.warn("{} {} issued {} SQL statements, query budget is {}",
+                        request.getMethod(), request.getRequestURI(), statements, queryBudget);
+            }
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package bg.home.books.config;
+
+// Брояч на SQL заявките в текущата нишка - стартира се в началото на HTTP заявката и се чете в края ѝ
+public final class QueryCounter {
+
+    private static final ThreadLocal<int[]> COUNT = new ThreadLocal<>();
+
+    private QueryCounter() {
+    }
+
+    public static void start() {
+        COUNT.set(new int[1]);
+    }
+
+    // Връща броя заявки от start() насам и спира броенето
+    public static int stop() {
+        int[] count = COUNT.get();
+        COUNT.remove();
+        return count == null ? 0 : count[0];
+    }
+
+    static void increment() {
+        int[] count = COUNT.get();
+        if (count != null) { // Извън HTTP заявка (стартиране, фонови задачи) не броим
+            count[0]++;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package bg.home.books.config;
+
+import java.util.function.Supplier;
+
+// Закача текущата нишка към основната база, за да вижда клиентът собствените си записи,
+// докато репликите ги догонят. Поставя се от ReadYourWritesFilter за времето на HTTP заявката
+// и от onPrimary() за четения, които трябва да видят току-що commit-нат запис.
+public final class ReadYourWrites {
+
+    private static final ThreadLocal<Boolean> PINNED = new ThreadLocal<>();
+
+    private ReadYourWrites() {
+    }
+
+    public static void pinToPrimary() {
+        PINNED.set(Boolean.TRUE);
+    }
+
+    public static void clear() {
+        PINNED.remove();
+    }
+
+    public static boolean isPinned() {
+        return PINNED.get() != null;
+    }
+
+    // Изпълнява action с четения от основната база и връща предишното състояние на нишката
+    public static <T> T onPrimary(Supplier<T> action) {
+        if (isPinned()) {
+            return action.get();
+        }
+        pinToPrimary();
+        try {
+            return action.get();
+        } finally {
+            clear();
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package bg.home.books.config;
+
+import bg.home.books.service.event.BookChangedEvent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+
+// При включени реплики readOnly четенията може да изостават от основната база с до books.datasource.replicas.read-your-writes.
+// Четене, започнало в този прозорец след промяна в каталога (или преди нея), може да е от реплика, която още не я е видяла:
+// резултатът му се връща на клиента, но не се кешира за всички и не получава ETag на каталога.
+// Промените се виждат само от записите през тази инстанция - както при CatalogVersion.
+@Component
+public class ReplicaLag {
+
+    private final boolean enabled;
+    private final long maxLagNanos;
+    private volatile long lastChangeNanos;
+
+    public ReplicaLag(@Value("${books.datasource.replicas.enabled:false}") boolean enabled,
+                      @Value("${books.datasource.replicas.read-your-writes:5s}") Duration maxLag) {
+        this.enabled = enabled;
+        this.maxLagNanos = maxLag.toNanos();
+        this.lastChangeNanos = System.nanoTime() - maxLagNanos; // Няма промени след стартирането
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBookChanged(BookChangedEvent event) {
+        lastChangeNanos = System.nanoTime();
+    }
+
+    // true, ако четене, започнало в readStartNanos (System.nanoTime()), може да е върнало данни отпреди последната промяна.
+    // Извикано след края на четенето хваща и промените по време на него.
+    public boolean mayBeStale(long readStartNanos) {
+        return enabled && !ReadYourWrites.isPinned() && readStartNanos - lastChangeNanos < maxLagNanos;
+    }
+}
@@ -0,0 +1,109 @@
+package bg.home.books.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.DestructionAwareBeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.core.PriorityOrdered;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Четене от репликите: транзакциите с readOnly = true отиват към пуловете на books.datasource.replicas.urls,
+// а записите и четенията на клиент, който току-що е писал, остават в основната база
+@Configuration
+@ConditionalOnProperty(name = "books.datasource.replicas.enabled", havingValue = "true")
+public class ReplicaRoutingConfig {
+
+    @Bean
+    static ReplicaRoutingPostProcessor replicaRoutingPostProcessor(
+            @Value("${books.datasource.replicas.urls}") List<String> urls,
+            @Value("${books.datasource.replicas.username:${spring.datasource.username:}}") String username,
+            @Value("${books.datasource.replicas.password:${spring.datasource.password:}}") String password,
+            @Value("${books.datasource.replicas.health-check-interval:5s}") Duration healthCheckInterval) {
+        return new ReplicaRoutingPostProcessor(urls, username, password, healthCheckInterval);
+    }
+
+    @Bean
+    FilterRegistrationBean<ReadYourWritesFilter> readYourWritesFilter(
+            @Value("${books.datasource.replicas.read-your-writes:5s}") Duration window) {
+        FilterRegistrationBean<ReadYourWritesFilter> registration =
+                new FilterRegistrationBean<>(new ReadYourWritesFilter(window));
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 20);
+        return registration;
+    }
+
+    // PriorityOrdered - обвива суровия пул преди броенето на заявките, бавните заявки и гейта на връзките,
+    // така че те виждат и връзките към репликите.
+    // Затварянето е тук, а не в изведения close() на бина: LazyConnectionDataSourceProxy и останалите обвивки го скриват.
+    static final class ReplicaRoutingPostProcessor implements DestructionAwareBeanPostProcessor, PriorityOrdered {
+
+        private final List<String> urls;
+        private final String username;
+        private final String password;
+        private final Duration healthCheckInterval;
+        private final Map<String, ReplicaRoutingDataSource> routings = new ConcurrentHashMap<>();
+
+        ReplicaRoutingPostProcessor(List<String> urls, String username, String password, Duration healthCheckInterval) {
+            this.urls = urls;
+            this.username = username;
+            this.password = password;
+            this.healthCheckInterval = healthCheckInterval;
+        }
+
+        @Override
+        public Object postProcessAfterInitialization(Object bean, String beanName) {
+            if (bean instanceof DataSource primary && !(bean instanceof LazyConnectionDataSourceProxy)) {
+                List<DataSource> replicas = new ArrayList<>();
+                for (int i = 0; i < urls.size(); i++) {
+                    replicas.add(replicaPool(urls.get(i).trim(), username, password, i + 1));
+                }
+                ReplicaRoutingDataSource routing = new ReplicaRoutingDataSource(primary, replicas, healthCheckInterval);
+                routings.put(beanName, routing);
+                // Истинската връзка се взима при първата заявка, когато readOnly на транзакцията вече е известно
+                return new LazyConnectionDataSourceProxy(routing);
+            }
+            return bean;
+        }
+
+        @Override
+        public boolean requiresDestruction(Object bean) {
+            return bean instanceof DataSource;
+        }
+
+        @Override
+        public void postProcessBeforeDestruction(Object bean, String beanName) {
+            ReplicaRoutingDataSource routing = routings.remove(beanName);
+            if (routing != null) {
+                routing.close(); // Пуловете на репликите и основният пул
+            }
+        }
+
+        @Override
+        public int getOrder() {
+            return Ordered.HIGHEST_PRECEDENCE;
+        }
+    }
+
+    private static DataSource replicaPool(String url, String username, String password, int number) {
+        HikariDataSource pool = DataSourceBuilder.create()
+                .type(HikariDataSource.class)
+                .url(url)
+                .username(username)
+                .password(password)
+                .build();
+        pool.setPoolName("replica-" + number);
+        pool.setReadOnly(true);
+        return pool;
+    }
+}
@@ -0,0 +1,139 @@
+package bg.home.books.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Изпраща връзките на транзакциите с readOnly = true към репликите (поред), а всичко останало - към основната база.
+// Решението се взима при взимане на връзката, затова пред нея трябва да стои LazyConnectionDataSourceProxy:
+// иначе мениджърът на транзакции взима връзката, преди да е отбелязал транзакцията като readOnly.
+// Реплика, която не дава връзка, се изключва до следващата успешна проверка; дотогава четенията отиват в основната база.
+// close() затваря и репликите, и основния пул - обвивките отгоре скриват неговия close() от контейнера.
+public class ReplicaRoutingDataSource extends DelegatingDataSource implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReplicaRoutingDataSource.class);
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+
+    private final List<Replica> replicas = new ArrayList<>();
+    private final AtomicInteger next = new AtomicInteger();
+    private final ScheduledExecutorService healthChecks;
+
+    public ReplicaRoutingDataSource(DataSource primary, List<DataSource> replicaDataSources, Duration healthCheckInterval) {
+        super(primary);
+        for (int i = 0; i < replicaDataSources.size(); i++) {
+            replicas.add(new Replica("replica-" + (i + 1), replicaDataSources.get(i)));
+        }
+        this.healthChecks = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "replica-health-check");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = healthCheckInterval.toMillis();
+        healthChecks.scheduleWithFixedDelay(this::checkReplicas, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        Replica replica = chooseReplica();
+        if (replica != null) {
+            try {
+                return replica.dataSource.getConnection();
+            } catch (SQLException e) {
+                replica.markDown(e); // Това четене и следващите до възстановяването - от основната база
+            }
+        }
+        return obtainTargetDataSource().getConnection();
+    }
+
+    // Проверява всички реплики сега (извиква се и периодично); връща броя на здравите
+    public int checkReplicas() {
+        int healthy = 0;
+        for (Replica replica : replicas) {
+            try (Connection connection = replica.dataSource.getConnection()) {
+                if (connection.isValid(VALIDATION_TIMEOUT_SECONDS)) {
+                    replica.markUp();
+                    healthy++;
+                } else {
+                    replica.markDown(null);
+                }
+            } catch (SQLException e) {
+                replica.markDown(e);
+            }
+        }
+        return healthy;
+    }
+
+    @Override
+    public void close() {
+        healthChecks.shutdownNow();
+        for (Replica replica : replicas) {
+            if (replica.dataSource instanceof AutoCloseable closeable) {
+                try {
+                    closeable.close();
+                } catch (Exception e) {
+                    LOGGER.warn("Could not close {}", replica.name, e);
+                }
+            }
+        }
+        if (obtainTargetDataSource() instanceof AutoCloseable primary) {
+            try {
+                primary.close();
+            } catch (Exception e) {
+                LOGGER.warn("Could not close the primary data source", e);
+            }
+        }
+    }
+
+    // Следващата здрава реплика поред или null, ако връзката трябва да е към основната база
+    private Replica chooseReplica() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly() || ReadYourWrites.isPinned()) {
+            return null;
+        }
+        int start = Math.floorMod(next.getAndIncrement(), Math.max(1, replicas.size()));
+        for (int i = 0; i < replicas.size(); i++) {
+            Replica replica = replicas.get((start + i) % replicas.size());
+            if (replica.healthy) {
+                return replica;
+            }
+        }
+        return null;
+    }
+
+    private static final class Replica {
+
+        private final String name;
+        private final DataSource dataSource;
+        private volatile boolean healthy = true;
+
+        private Replica(String name, DataSource dataSource) {
+            this.name = name;
+            this.dataSource = dataSource;
+        }
+
+        private void markDown(SQLException cause) {
+            if (healthy) {
+                healthy = false;
+                LOGGER.warn("Read replica {} is unavailable, reading from the primary", name, cause);
+            }
+        }
+
+        private void markUp() {
+            if (!healthy) {
+                healthy = true;
+                LOGGER.info("Read replica {} is available again", name);
+            }
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package bg.home.books.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+// Лог само на бавните заявки и на извадка от останалите вместо пълното SQL трасиране
+// (пълното трасиране е в профила dev - application-dev.yaml)
+@Configuration
+@ConditionalOnProperty(name = "books.slow-query-log.enabled", havingValue = "true", matchIfMissing = true)
+public class SlowQueryLogConfig {
+
+    @Bean
+    static BeanPostProcessor slowQueryLoggingPostProcessor(
+            @Value("${books.slow-query-log.threshold:200ms}") Duration threshold,
+            @Value("${books.slow-query-log.sample-rate:0}") double sampleRate) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof DataSource dataSource && !(bean instanceof SlowQueryLoggingDataSource)) {
+                    return new SlowQueryLoggingDataSource(dataSource, threshold, sampleRate);
+                }
+                return bean;
+            }
+        };
+    }
+}
@@ -0,0 +1,142 @@
+package bg.home.books.config;
+
+import bg.home.books.service.BookService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+// DataSource, който мери всяка изпълнена заявка и логва само бавните (над прага) и случайна извадка от останалите,
+// заедно със стойностите на параметрите и метода на BookService, от който е извикана.
+// Логерът bg.home.books.sql е закачен за асинхронен appender (logback-spring.xml).
+public class SlowQueryLoggingDataSource extends DelegatingDataSource {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger("bg.home.books.sql");
+    private static final int MAX_BIND_LENGTH = 100;
+
+    private final long thresholdNanos;
+    private final double sampleRate;
+
+    public SlowQueryLoggingDataSource(DataSource target, Duration threshold, double sampleRate) {
+        super(target);
+        this.thresholdNanos = threshold.toNanos();
+        this.sampleRate = sampleRate;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return logging(super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return logging(super.getConnection(username, password));
+    }
+
+    private Connection logging(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(
+                SlowQueryLoggingDataSource.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    Object result = invoke(connection, method, args);
+                    String name = method.getName();
+                    if (result instanceof Statement statement
+                            && (name.startsWith("prepare") || name.equals("createStatement"))) {
+                        String sql = name.startsWith("prepare") ? (String) args[0] : null;
+                        return timed(statement, method.getReturnType(), sql);
+                    }
+                    return result;
+                });
+    }
+
+    // Обвиваме заявката: запомняме параметрите от setXxx(index, value) и мерим execute*
+    private Object timed(Statement statement, Class<?> type, String preparedSql) {
+        Map<Integer, Object> binds = new TreeMap<>();
+        int[] batched = {0};
+        return Proxy.newProxyInstance(
+                SlowQueryLoggingDataSource.class.getClassLoader(),
+                new Class<?>[]{type},
+                (proxy, method, args) -> {
+                    String name = method.getName();
+                    if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer index) {
+                        binds.put(index, args[1]);
+                    } else if (name.equals("clearParameters")) {
+                        binds.clear();
+                    } else if (name.equals("addBatch")) {
+                        batched[0]++;
+                        binds.clear(); // За пакетите логваме само броя редове
+                    } else if (name.startsWith("execute")) {
+                        String sql = preparedSql != null ? preparedSql : args != null && args.length > 0 ? (String) args[0] : null;
+                        long start = System.nanoTime();
+                        try {
+                            return invoke(statement, method, args);
+                        } finally {
+                            log(System.nanoTime() - start, sql, binds, batched[0]);
+                            batched[0] = 0;
+                        }
+                    }
+                    return invoke(statement, method, args);
+                });
+    }
+
+    private void log(long elapsedNanos, String sql, Map<Integer, Object> binds, int batched) {
+        boolean slow = elapsedNanos >= thresholdNanos;
+        if (!slow && (sampleRate <= 0 || ThreadLocalRandom.current().nextDouble() >= sampleRate)) {
+            return;
+        }
+        if (!LOGGER.isInfoEnabled()) {
+            return;
+        }
+        String caller = findCaller().orElse("-");
+        String parameters = batched > 0 ? "batch of " + batched : formatBinds(binds);
+        if (slow) {
+            LOGGER.warn("Slow SQL {} ms in {}: {} {}", Duration.ofNanos(elapsedNanos).toMillis(), caller, sql, parameters);
+        } else {
+            LOGGER.info("Sampled SQL {} ms in {}: {} {}", Duration.ofNanos(elapsedNanos).toMillis(), caller, sql, parameters);
+        }
+    }
+
+    // Първият метод от стека, който е в имплементацията на BookService (търси се само при запис в лога)
+    private static Optional<String> findCaller() {
+        return StackWalker.getInstance(StackWalker.Option.RETAIN_CLASS_REFERENCE)
+                .walk(frames -> frames
+                        .filter(frame -> BookService.class.isAssignableFrom(frame.getDeclaringClass()))
+                        .map(frame -> frame.getDeclaringClass().getSimpleName() + "." + frame.getMethodName())
+                        .findFirst());
+    }
+
+    private static String formatBinds(Map<Integer, Object> binds) {
+        StringBuilder result = new StringBuilder("[");
+        binds.forEach((index, value) -> {
+            String text = String.valueOf(value);
+            if (text.length() > MAX_BIND_LENGTH) {
+                text = text.substring(0, MAX_BIND_LENGTH) + "...";
+            }
+            if (result.length() > 1) {
+                result.append(", ");
+            }
+            result.append(index).append('=').append(text);
+        });
+        return result.append(']').toString();
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+}
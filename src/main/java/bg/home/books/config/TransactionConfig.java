@@ -0,0 +1,31 @@
+package bg.home.books.config;
+
+import bg.home.books.service.impl.BookServiceImpl;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+
+// Транзакциите за запис през TransactionTemplate от заявките (импорт, изтриване) са ограничени по време.
+// Генерирането на каталога при стартиране ползва свой шаблон без ограничение - вижте SyntheticDataGenerator.
+// /api/books/changes пропуска промените от последните BookServiceImpl.CHANGES_SETTLE_TIME, а това е безопасно само
+// ако никоя транзакция не се commit-ва по-късно от толкова след заявките си. След изтичане на времето следващата
+// заявка в транзакцията се прекъсва и тя се връща назад. Единичните записи през JPA са една кратка заявка.
+@Configuration
+public class TransactionConfig {
+
+    @Bean
+    TransactionTemplate transactionTemplate(PlatformTransactionManager transactionManager,
+                                            @Value("${books.max-write-transaction:10s}") Duration maxWriteTransaction) {
+        if (maxWriteTransaction.compareTo(BookServiceImpl.CHANGES_SETTLE_TIME) >= 0) {
+            throw new IllegalStateException("books.max-write-transaction (" + maxWriteTransaction
+                    + ") must be shorter than the change feed settle time (" + BookServiceImpl.CHANGES_SETTLE_TIME + ")");
+        }
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        template.setTimeout((int) Math.max(1, maxWriteTransaction.toSeconds()));
+        return template;
+    }
+}
@@ -0,0 +1,61 @@
+package bg.home.books.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnJava;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.system.JavaVersion;
+import org.springframework.boot.thread.Threading;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+// Режим с виртуални нишки (профил virtual): самите нишки за заявките (Tomcat) и applicationTaskExecutor се включват от
+// spring.threads.virtual.enabled, което Spring Boot прилага само на Java 21+. Тук са защитите около него.
+@Configuration
+public class VirtualThreadConfig {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(VirtualThreadConfig.class);
+
+    // Ограничение на едновременните връзки към базата пред пула
+    @Bean
+    @ConditionalOnProperty(name = "books.datasource.gate.enabled", havingValue = "true")
+    static BeanPostProcessor connectionGatePostProcessor(
+            @Value("${books.datasource.gate.max-concurrent:10}") int maxConcurrent,
+            @Value("${books.datasource.gate.acquire-timeout:5s}") Duration acquireTimeout) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof DataSource dataSource && !(bean instanceof ConnectionGateDataSource)) {
+                    LOGGER.info("Limiting data source '{}' to {} concurrent connections", beanName, maxConcurrent);
+                    return new ConnectionGateDataSource(dataSource, maxConcurrent, acquireTimeout);
+                }
+                return bean;
+            }
+        };
+    }
+
+    // Следене за виртуални нишки, закачени (pinned) за носещата нишка - напр. блокиране в synchronized.
+    // Само когато виртуалните нишки наистина са включени (настройката и Java 21+).
+    @Bean(initMethod = "start", destroyMethod = "close")
+    @ConditionalOnThreading(Threading.VIRTUAL)
+    VirtualThreadPinningMonitor virtualThreadPinningMonitor(
+            @Value("${books.virtual-threads.pinning-threshold:20ms}") Duration threshold) {
+        return new VirtualThreadPinningMonitor(threshold);
+    }
+
+    // Настройката без Java 21 не прави нищо - предупреждаваме, вместо мълчаливо да останем на платформени нишки
+    @Bean
+    @ConditionalOnProperty(name = "spring.threads.virtual.enabled", havingValue = "true")
+    @ConditionalOnJava(value = JavaVersion.TWENTY_ONE, range = ConditionalOnJava.Range.OLDER_THAN)
+    ApplicationRunner virtualThreadsUnavailableWarning() {
+        return args -> LOGGER.warn("spring.threads.virtual.enabled is set, but Java {} has no virtual threads; "
+                + "requests run on platform threads", Runtime.version().feature());
+    }
+}
@@ -0,0 +1,58 @@
+package bg.home.books.config;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Слуша JFR събитието jdk.VirtualThreadPinned и логва кой код е държал виртуалната нишка закачена
+// за носещата нишка по-дълго от прага. На JVM без виртуални нишки просто не получава събития.
+public class VirtualThreadPinningMonitor {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(VirtualThreadPinningMonitor.class);
+    private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+    private static final int LOGGED_FRAMES = 8;
+
+    private final Duration threshold;
+    private final AtomicLong pinnedCount = new AtomicLong();
+    private RecordingStream recording;
+
+    public VirtualThreadPinningMonitor(Duration threshold) {
+        this.threshold = threshold;
+    }
+
+    public void start() {
+        recording = new RecordingStream();
+        recording.enable(PINNED_EVENT).withThreshold(threshold).withStackTrace();
+        recording.onEvent(PINNED_EVENT, this::logPinned);
+        recording.startAsync();
+    }
+
+    public void close() {
+        if (recording != null) {
+            recording.close();
+        }
+    }
+
+    public long getPinnedCount() {
+        return pinnedCount.get();
+    }
+
+    private void logPinned(RecordedEvent event) {
+        pinnedCount.incrementAndGet();
+
+        StringBuilder frames = new StringBuilder();
+        if (event.getStackTrace() != null) {
+            event.getStackTrace().getFrames().stream()
+                    .limit(LOGGED_FRAMES)
+                    .map(RecordedFrame::getMethod)
+                    .forEach(method -> frames.append("\n\tat ")
+                            .append(method.getType().getName()).append('.').append(method.getName()));
+        }
+        LOGGER.warn("Virtual thread pinned for {} ms{}", event.getDuration().toMillis(), frames);
+    }
+}
@@ -0,0 +1,19 @@
+package bg.home.books.config;
+
+import bg.home.books.web.BookProtobufHttpMessageConverter;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.List;
+
+@Configuration
+public class WebConfig implements WebMvcConfigurer {
+
+    // Protobuf се добавя накрая, за да остане JSON форматът по подразбиране при Accept: */*
+    // (CBOR и Smile Spring регистрира сам след JSON, щом библиотеките им са налични)
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        converters.add(new BookProtobufHttpMessageConverter());
+    }
+}
@@ -3,37 +3,77 @@ package bg.home.books.init;
 import bg.home.books.model.entity.AuthorEntity;
 import bg.home.books.model.entity.BookEntity;
 import bg.home.books.repository.AuthorRepository;
+import bg.home.books.repository.BookJdbcRepository;
 import bg.home.books.repository.BookRepository;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.CommandLineRunner;
+import org.springframework.core.task.AsyncTaskExecutor;
 import org.springframework.stereotype.Component;
 
-@Component // Маркира класа като Spring компонент, който ще се изпълни автоматично
+// Маркира класа като Spring компонент, който ще се изпълни автоматично.
+// По подразбиране записва няколко известни книги; с профила seed или --books.seed.enabled=true
+// вместо тях генерира голям синтетичен каталог (books.seed.authors / books.seed.books).
+@Component
 public class DBInit implements CommandLineRunner {
 
     private final AuthorRepository authorRepository; // Репозитори за работа с авторите
     private final BookRepository bookRepository; // Репозитори за работа с книгите
+    private final BookJdbcRepository bookJdbcRepository; // Проверка дали базата е празна с една заявка
+    private final AsyncTaskExecutor taskExecutor; // Общият executor на приложението (виртуални нишки, ако са включени)
+    private final SyntheticDataGenerator dataGenerator; // Генератор на голям каталог
+
+    private final boolean seedEnabled;
+    private final int seedAuthors;
+    private final long seedBooks;
+    private final int seedParallelism;
+    private final long seedRandom;
 
     // Конструктор за инжектиране на зависимостите (авторите и книгите)
     DBInit(
             AuthorRepository authorRepository,
-            BookRepository bookRepository) {
+            BookRepository bookRepository,
+            BookJdbcRepository bookJdbcRepository,
+            @Qualifier("applicationTaskExecutor") AsyncTaskExecutor taskExecutor,
+            SyntheticDataGenerator dataGenerator,
+            @Value("${books.seed.enabled:false}") boolean seedEnabled,
+            @Value("${books.seed.authors:10000}") int seedAuthors,
+            @Value("${books.seed.books:1000000}") long seedBooks,
+            @Value("${books.seed.parallelism:4}") int seedParallelism,
+            @Value("${books.seed.random-seed:42}") long seedRandom) {
         this.authorRepository = authorRepository;
         this.bookRepository = bookRepository;
+        this.bookJdbcRepository = bookJdbcRepository;
+        this.taskExecutor = taskExecutor;
+        this.dataGenerator = dataGenerator;
+        this.seedEnabled = seedEnabled;
+        this.seedAuthors = seedAuthors;
+        this.seedBooks = seedBooks;
+        this.seedParallelism = seedParallelism;
+        this.seedRandom = seedRandom;
     }
 
     @Override
     public void run(String... args) throws Exception {
-        // Проверяваме дали базата е празна (няма книги и автори)
-        if (bookRepository.count() == 0 && authorRepository.count() == 0) {
-            // Ако е празна, добавяме тестови данни (известни български автори)
-            initJovkov();
-            initNikolaiHaitov();
-            initDimitarTalev();
-            initElinPelin();
-            initVazov();
+        // Проверяваме дали базата е празна (няма книги и автори) - без да броим редовете
+        if (bookJdbcRepository.catalogExists()) {
+            return;
+        }
+        if (seedEnabled) {
+            dataGenerator.generate(seedAuthors, seedBooks, seedParallelism, seedRandom);
+        } else {
+            // Ако е празна, добавяме тестови данни (известни български автори) - всеки автор в отделна задача
+            CompletableFuture.allOf(
+                    taskExecutor.submitCompletable(this::initJovkov),
+                    taskExecutor.submitCompletable(this::initNikolaiHaitov),
+                    taskExecutor.submitCompletable(this::initDimitarTalev),
+                    taskExecutor.submitCompletable(this::initElinPelin),
+                    taskExecutor.submitCompletable(this::initVazov)
+            ).join(); // Приложението тръгва чак след като данните са записани
         }
     }
 
@@ -97,12 +137,6 @@ public class DBInit implements CommandLineRunner {
             allBooks.add(aBook); // Добавяме книгата в списъка
         }
 
-        // Свързваме книгите с автора
-        author.setBooks(allBooks);
-
-        // Обновяваме автора с пълния списък от книги
-        authorRepository.save(author);
-
         // Записваме всички книги в базата
         bookRepository.saveAll(allBooks);
     }
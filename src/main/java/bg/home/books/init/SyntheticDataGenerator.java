@@ -0,0 +1,170 @@
+package bg.home.books.init;
+
+import bg.home.books.repository.AuthorJdbcRepository;
+import bg.home.books.repository.BookJdbcRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Генератор на голям реалистичен каталог за товарни тестове: N автора и M книги,
+// разпределени между авторите по Zipf (малко автори с много книги, много автори с по няколко),
+// дълги заглавия на кирилица и валидни ISBN-13. Книгите се пишат на пакети в паралелни порции.
+@Component
+public class SyntheticDataGenerator {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SyntheticDataGenerator.class);
+
+    // Брой книги в една порция (една транзакция в една нишка)
+    static final int CHUNK_SIZE = 10_000;
+
+    // Степен на Zipf разпределението - около 1 дава типичната "дълга опашка"
+    private static final double ZIPF_EXPONENT = 1.07;
+
+    private static final String[] FIRST_NAMES = {
+            "Иван", "Георги", "Димитър", "Николай", "Петър", "Стефан", "Христо", "Йордан", "Васил", "Атанас",
+            "Мария", "Елена", "Надежда", "Радка", "Веселина", "Блага", "Евгения", "Анна", "Теодора", "Дора"
+    };
+
+    private static final String[] LAST_NAMES = {
+            "Петров", "Иванов", "Димитров", "Стоянов", "Георгиев", "Костов", "Николов", "Христов", "Тодоров",
+            "Атанасов", "Вълчев", "Радичков", "Каралийчев", "Станев", "Талев", "Марков", "Ангелов", "Илиев"
+    };
+
+    private static final String[] TITLE_WORDS = {
+            "приказка", "за", "далечната", "планина", "и", "последният", "летен", "ден", "над", "старият", "град",
+            "песен", "на", "вятъра", "сенките", "от", "Балкана", "разказ", "тиха", "река", "любов", "времето",
+            "изгубеното", "писмо", "звездите", "под", "манастирската", "лоза", "хроника", "една", "кратка", "нощ",
+            "пътят", "към", "морето", "легенда", "забравеното", "село", "зима", "пролет", "тайната", "гората"
+    };
+
+    private final AuthorJdbcRepository authorJdbcRepository;
+    private final BookJdbcRepository bookJdbcRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    public SyntheticDataGenerator(AuthorJdbcRepository authorJdbcRepository,
+                                  BookJdbcRepository bookJdbcRepository,
+                                  PlatformTransactionManager transactionManager) {
+        this.authorJdbcRepository = authorJdbcRepository;
+        this.bookJdbcRepository = bookJdbcRepository;
+        // Без ограничението books.max-write-transaction на заявките: генерирането върви при стартиране, преди
+        // приложението да приема заявки, а авторите и порция от 10 000 книги на бавен диск лесно минават 10s
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    // Генерира и записва authorCount автора и bookCount книги в parallelism нишки
+    public void generate(int authorCount, long bookCount, int parallelism, long randomSeed) {
+        long start = System.nanoTime();
+        List<String> names = new ArrayList<>(authorCount);
+        for (int i = 0; i < authorCount; i++) {
+            names.add(authorName(i));
+        }
+        transactionTemplate.executeWithoutResult(status -> authorJdbcRepository.insertAuthors(names));
+        report("authors", authorCount, start);
+
+        // Подреждаме ID-тата в реда на генериране, за да може Zipf рангът да е индекс в масив
+        Map<String, Long> idsByName = authorJdbcRepository.findAllIds();
+        long[] authorIds = new long[authorCount];
+        for (int i = 0; i < authorCount; i++) {
+            authorIds[i] = idsByName.get(names.get(i));
+        }
+        double[] zipfCdf = zipfCdf(authorCount, ZIPF_EXPONENT);
+
+        start = System.nanoTime();
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+        try {
+            List<CompletableFuture<Void>> chunks = new ArrayList<>();
+            for (long from = 0; from < bookCount; from += CHUNK_SIZE) {
+                long chunkStart = from;
+                long chunkEnd = Math.min(from + CHUNK_SIZE, bookCount);
+                // Всяка порция има собствен детерминиран генератор - резултатът не зависи от броя нишки
+                SplittableRandom random = new SplittableRandom(randomSeed + chunkStart);
+                chunks.add(CompletableFuture.runAsync(
+                        () -> insertChunk(chunkStart, chunkEnd, authorIds, zipfCdf, random), executor));
+            }
+            CompletableFuture.allOf(chunks.toArray(CompletableFuture[]::new)).join();
+        } finally {
+            executor.shutdown();
+        }
+        report("books", bookCount, start);
+    }
+
+    private void insertChunk(long from, long to, long[] authorIds, double[] zipfCdf, SplittableRandom random) {
+        List<Object[]> rows = new ArrayList<>((int) (to - from));
+        for (long n = from; n < to; n++) {
+            long authorId = authorIds[zipfRank(zipfCdf, random.nextDouble())];
+            rows.add(new Object[]{title(random), isbn13(n), authorId});
+        }
+        transactionTemplate.executeWithoutResult(status -> bookJdbcRepository.insertBookRows(rows));
+    }
+
+    private static void report(String what, long rows, long startNanos) {
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        LOGGER.info("Generated {} {} in {} s ({} rows/s)",
+                rows, what, String.format("%.1f", seconds), String.format("%.0f", rows / Math.max(seconds, 1e-9)));
+    }
+
+    // Уникално име за всеки индекс: първо всички комбинации име + фамилия, после с пореден номер
+    static String authorName(int index) {
+        int combinations = FIRST_NAMES.length * LAST_NAMES.length;
+        String first = FIRST_NAMES[index % FIRST_NAMES.length];
+        String last = LAST_NAMES[(index / FIRST_NAMES.length) % LAST_NAMES.length];
+        boolean female = index % FIRST_NAMES.length >= FIRST_NAMES.length / 2;
+        String name = first + " " + last + (female ? "а" : "");
+        return index < combinations ? name : name + " " + (index / combinations + 1);
+    }
+
+    // Заглавие от 4 до 12 думи, с главна първа буква
+    static String title(SplittableRandom random) {
+        int words = 4 + random.nextInt(9);
+        StringBuilder title = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            if (i > 0) {
+                title.append(' ');
+            }
+            title.append(TITLE_WORDS[random.nextInt(TITLE_WORDS.length)]);
+        }
+        title.setCharAt(0, Character.toUpperCase(title.charAt(0)));
+        return title.toString();
+    }
+
+    // Валиден ISBN-13 с префикс 978 и поредния номер на книгата (уникален за всеки номер под 10^9)
+    static String isbn13(long sequence) {
+        String digits = "978" + String.format("%09d", sequence);
+        int sum = 0;
+        for (int i = 0; i < digits.length(); i++) {
+            sum += (digits.charAt(i) - '0') * (i % 2 == 0 ? 1 : 3);
+        }
+        return digits + (10 - sum % 10) % 10;
+    }
+
+    // Кумулативно разпределение на Zipf за рангове 1..n
+    static double[] zipfCdf(int n, double exponent) {
+        double[] cdf = new double[n];
+        double total = 0;
+        for (int rank = 1; rank <= n; rank++) {
+            total += 1 / Math.pow(rank, exponent);
+            cdf[rank - 1] = total;
+        }
+        for (int i = 0; i < n; i++) {
+            cdf[i] /= total;
+        }
+        return cdf;
+    }
+
+    // Индексът (ранг - 1) за равномерно разпределено u в [0, 1)
+    static int zipfRank(double[] cdf, double u) {
+        int index = Arrays.binarySearch(cdf, u);
+        return Math.min(index >= 0 ? index : -index - 1, cdf.length - 1);
+    }
+}
@@ -1,17 +1,21 @@
 package bg.home.books.model.entity;
 
+import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
-
-import jakarta.persistence.Entity;
+import jakarta.persistence.FetchType;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.OneToMany;
 import jakarta.persistence.Table;
+import jakarta.persistence.Version;
+
+import java.time.Instant;
 import java.util.List;
 
 @Entity
-@Table(name = "authors")
+@Table(name = "authors", indexes = @Index(name = "ux_authors_name", columnList = "name", unique = true)) // Едно име - един автор
 public class AuthorEntity {
 
     @Id
@@ -19,7 +23,17 @@ public class AuthorEntity {
     private Long id;
     private String name;
 
-    @OneToMany(mappedBy = "author") //mappedBy = "author" в Author указва на JPA, че връзката е дефинирана в BookEntity чрез полето author.
+    @Version // Увеличава се при всяка промяна на автора
+    @Column(nullable = false, columnDefinition = "bigint default 0 not null") // Съществуващите редове получават 0
+    private Long version;
+
+    // Момент на последната промяна; попълва се от базата, както при книгите
+    @Column(name = "updated_at", insertable = false, updatable = false,
+            columnDefinition = BookEntity.UPDATED_AT_COLUMN)
+    private Instant updatedAt;
+
+    @OneToMany(mappedBy = "author", fetch = FetchType.LAZY) //mappedBy = "author" в Author указва на JPA, че връзката е дефинирана в BookEntity чрез полето author.
+    // Колекцията не се чете от кода - книгите на автор и броят им идват от проекции (AuthorRepository, BookRepository)
     private List<BookEntity> books;
 
     public Long getId() {
@@ -40,6 +54,19 @@ public class AuthorEntity {
         return this;
     }
 
+    public Long getVersion() {
+        return version;
+    }
+
+    public AuthorEntity setVersion(Long version) {
+        this.version = version;
+        return this;
+    }
+
+    public Instant getUpdatedAt() {
+        return updatedAt;
+    }
+
     public List<BookEntity> getBooks() {
         return books;
     }
@@ -54,7 +81,8 @@ public class AuthorEntity {
         return "AuthorEntity{" +
                 "id=" + id +
                 ", name='" + name + '\'' +
-                ", books=" + books +
-                '}';
+                ", version=" + version +
+                ", updatedAt=" + updatedAt +
+                '}'; // Без books - иначе логването на автор зарежда цялата колекция
     }
 }
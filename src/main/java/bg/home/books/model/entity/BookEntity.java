@@ -1,23 +1,47 @@
 package bg.home.books.model.entity;
 
+import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
+import jakarta.persistence.FetchType;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.Table;
+import jakarta.persistence.Version;
+
+import java.time.Instant;
 
 @Entity
-@Table(name = "books")
+@Table(name = "books", indexes = {
+        @Index(name = "ux_books_isbn", columnList = "isbn", unique = true), // Един ISBN - една книга
+        @Index(name = "ix_books_title_id", columnList = "title, id"), // Страниране по заглавие без сортиране на таблицата
+        @Index(name = "ix_books_author_id_id", columnList = "author_id, id"), // Книгите на автор, страницирани по ID
+        @Index(name = "ix_books_updated_at_id", columnList = "updated_at, id") // Промените след даден момент (/api/books/changes)
+})
 public class BookEntity {
 
+    // Колоната updated_at се поддържа от базата, за да я обновяват и заявките покрай JPA
+    public static final String UPDATED_AT_COLUMN =
+            "timestamp(6) default current_timestamp(6) on update current_timestamp(6) not null";
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
     private String title;
     private String isbn;
 
-    @ManyToOne
+    @Version // Увеличава се при всяка промяна; служи за ETag и оптимистично заключване
+    @Column(nullable = false, columnDefinition = "bigint default 0 not null") // Съществуващите редове получават 0
+    private Long version;
+
+    // Момент на последната промяна; попълва се от базата при всеки INSERT и UPDATE - и от JDBC записите
+    @Column(name = "updated_at", insertable = false, updatable = false,
+            columnDefinition = UPDATED_AT_COLUMN)
+    private Instant updatedAt;
+
+    @ManyToOne(fetch = FetchType.LAZY) // Авторът се зарежда само при нужда; списъците ползват проекции с join
     private AuthorEntity author;
 
     public Long getId() {
@@ -47,6 +71,19 @@ public class BookEntity {
         return this;
     }
 
+    public Long getVersion() {
+        return version;
+    }
+
+    public BookEntity setVersion(Long version) {
+        this.version = version;
+        return this;
+    }
+
+    public Instant getUpdatedAt() {
+        return updatedAt;
+    }
+
     public AuthorEntity getAuthor() {
         return author;
     }
@@ -62,7 +99,10 @@ public class BookEntity {
                 "id=" + id +
                 ", title='" + title + '\'' +
                 ", isbn='" + isbn + '\'' +
-                ", author=" + (author != null ? author.getName() : null) +
+                ", version=" + version +
+                ", updatedAt=" + updatedAt +
+                // Само ID-то - то е в прокси обекта и не зарежда мързеливия автор (извън сесия - LazyInitializationException)
+                ", authorId=" + (author != null ? author.getId() : null) +
                 '}';
     }
 }
@@ -0,0 +1,46 @@
+package bg.home.books.model.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+
+import java.time.Instant;
+
+// Следа от изтрита книга, за да научат и клиентите, които синхронизират промените (/api/books/changes).
+// ID-тата на книгите не се използват повторно, така че book_id е достатъчен ключ.
+@Entity
+@Table(name = "book_tombstones", indexes =
+        @Index(name = "ix_book_tombstones_deleted_at_book_id", columnList = "deleted_at, book_id"))
+public class BookTombstoneEntity {
+
+    @Id
+    @Column(name = "book_id")
+    private Long bookId;
+
+    @Column(name = "deleted_at", insertable = false, updatable = false,
+            columnDefinition = "timestamp(6) default current_timestamp(6) not null")
+    private Instant deletedAt;
+
+    public Long getBookId() {
+        return bookId;
+    }
+
+    public BookTombstoneEntity setBookId(Long bookId) {
+        this.bookId = bookId;
+        return this;
+    }
+
+    public Instant getDeletedAt() {
+        return deletedAt;
+    }
+
+    @Override
+    public String toString() {
+        return "BookTombstoneEntity{" +
+                "bookId=" + bookId +
+                ", deletedAt=" + deletedAt +
+                '}';
+    }
+}
@@ -0,0 +1,36 @@
+package bg.home.books.model.entity.dto;
+
+import java.util.List;
+
+public class AuthorPageDTO {
+
+
+    private List<AuthorSummaryDTO> authors;
+    private Long nextCursor; // ID на последния автор от страницата или null, ако няма следваща страница
+
+    public List<AuthorSummaryDTO> getAuthors() {
+        return authors;
+    }
+
+    public AuthorPageDTO setAuthors(List<AuthorSummaryDTO> authors) {
+        this.authors = authors;
+        return this;
+    }
+
+    public Long getNextCursor() {
+        return nextCursor;
+    }
+
+    public AuthorPageDTO setNextCursor(Long nextCursor) {
+        this.nextCursor = nextCursor;
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return "AuthorPageDTO{" +
+                "authors=" + authors +
+                ", nextCursor=" + nextCursor +
+                '}';
+    }
+}
@@ -0,0 +1,55 @@
+package bg.home.books.model.entity.dto;
+
+public class AuthorSummaryDTO {
+
+
+    private Long id;
+    private String name;
+    private long bookCount; // Брой книги на автора, преброени в базата с GROUP BY
+
+    public AuthorSummaryDTO() {
+    }
+
+    // Конструктор за JPQL проекцията с count(...)
+    public AuthorSummaryDTO(Long id, String name, Long bookCount) {
+        this.id = id;
+        this.name = name;
+        this.bookCount = bookCount;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public AuthorSummaryDTO setId(Long id) {
+        this.id = id;
+        return this;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public AuthorSummaryDTO setName(String name) {
+        this.name = name;
+        return this;
+    }
+
+    public long getBookCount() {
+        return bookCount;
+    }
+
+    public AuthorSummaryDTO setBookCount(long bookCount) {
+        this.bookCount = bookCount;
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return "AuthorSummaryDTO{" +
+                "id=" + id +
+                ", name='" + name + '\'' +
+                ", bookCount=" + bookCount +
+                '}';
+    }
+}
@@ -0,0 +1,36 @@
+package bg.home.books.model.entity.dto;
+
+import java.util.List;
+
+public class BookBatchDTO {
+
+
+    private List<BookDTO> books; // Книгите в реда на поисканите ID-та; null на мястото на липсваща книга
+    private List<Long> missingIds; // Поисканите ID-та, за които няма книга
+
+    public List<BookDTO> getBooks() {
+        return books;
+    }
+
+    public BookBatchDTO setBooks(List<BookDTO> books) {
+        this.books = books;
+        return this;
+    }
+
+    public List<Long> getMissingIds() {
+        return missingIds;
+    }
+
+    public BookBatchDTO setMissingIds(List<Long> missingIds) {
+        this.missingIds = missingIds;
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return "BookBatchDTO{" +
+                "books=" + books +
+                ", missingIds=" + missingIds +
+                '}';
+    }
+}
@@ -0,0 +1,75 @@
+package bg.home.books.model.entity.dto;
+
+import java.time.Instant;
+
+public class BookChangeDTO {
+
+
+    private String type; // CREATED, UPDATED или DELETED - както при събитията от /api/books/events
+    private Long bookId;
+    private BookDTO book; // Текущото състояние на книгата; null при изтриване
+    private Instant changedAt;
+
+    public BookChangeDTO() {
+    }
+
+    // Конструктор за JPQL проекцията на променените книги; версия 0 означава, че книгата не е променяна след създаването
+    public BookChangeDTO(Long id, String title, String isbn, String authorName, Long version, Instant changedAt) {
+        this.type = version != null && version > 0 ? "UPDATED" : "CREATED";
+        this.bookId = id;
+        this.book = new BookDTO(id, title, isbn, authorName, version);
+        this.changedAt = changedAt;
+    }
+
+    // Конструктор за JPQL проекцията на изтритите книги
+    public BookChangeDTO(Long bookId, Instant changedAt) {
+        this.type = "DELETED";
+        this.bookId = bookId;
+        this.changedAt = changedAt;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public BookChangeDTO setType(String type) {
+        this.type = type;
+        return this;
+    }
+
+    public Long getBookId() {
+        return bookId;
+    }
+
+    public BookChangeDTO setBookId(Long bookId) {
+        this.bookId = bookId;
+        return this;
+    }
+
+    public BookDTO getBook() {
+        return book;
+    }
+
+    public BookChangeDTO setBook(BookDTO book) {
+        this.book = book;
+        return this;
+    }
+
+    public Instant getChangedAt() {
+        return changedAt;
+    }
+
+    public BookChangeDTO setChangedAt(Instant changedAt) {
+        this.changedAt = changedAt;
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return "BookChangeDTO{" +
+                "type='" + type + '\'' +
+                ", bookId=" + bookId +
+                ", changedAt=" + changedAt +
+                '}';
+    }
+}
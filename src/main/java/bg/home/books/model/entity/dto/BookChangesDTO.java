@@ -0,0 +1,47 @@
+package bg.home.books.model.entity.dto;
+
+import java.util.List;
+
+public class BookChangesDTO {
+
+
+    private List<BookChangeDTO> changes;
+    private String nextToken; // Подава се като since при следващото синхронизиране
+    private boolean hasMore; // Има още промени след nextToken - клиентът може да продължи веднага
+
+    public List<BookChangeDTO> getChanges() {
+        return changes;
+    }
+
+    public BookChangesDTO setChanges(List<BookChangeDTO> changes) {
+        this.changes = changes;
+        return this;
+    }
+
+    public String getNextToken() {
+        return nextToken;
+    }
+
+    public BookChangesDTO setNextToken(String nextToken) {
+        this.nextToken = nextToken;
+        return this;
+    }
+
+    public boolean isHasMore() {
+        return hasMore;
+    }
+
+    public BookChangesDTO setHasMore(boolean hasMore) {
+        this.hasMore = hasMore;
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return "BookChangesDTO{" +
+                "changes=" + changes +
+                ", nextToken='" + nextToken + '\'' +
+                ", hasMore=" + hasMore +
+                '}';
+    }
+}
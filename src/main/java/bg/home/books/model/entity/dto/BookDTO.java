@@ -7,6 +7,23 @@ public class BookDTO {
     private String title;
     private String isbn;
     private AuthorDTO author;
+    private Long version; // Версия на реда; сменя се при всяка промяна на книгата
+
+    public BookDTO() {
+    }
+
+    public BookDTO(Long id, String title, String isbn, String authorName) {
+        this(id, title, isbn, authorName, null);
+    }
+
+    // Конструктор за JPQL проекции (select new ...), за да не зареждаме цели entity-та
+    public BookDTO(Long id, String title, String isbn, String authorName, Long version) {
+        this.id = id;
+        this.title = title;
+        this.isbn = isbn;
+        this.author = new AuthorDTO().setName(authorName);
+        this.version = version;
+    }
 
     public Long getId() {
         return id;
@@ -44,6 +61,15 @@ public class BookDTO {
         return this;
     }
 
+    public Long getVersion() {
+        return version;
+    }
+
+    public BookDTO setVersion(Long version) {
+        this.version = version;
+        return this;
+    }
+
     @Override
     public String toString() {
         return "BookDTO{" +
@@ -51,6 +77,7 @@ public class BookDTO {
                 ", title='" + title + '\'' +
                 ", isbn='" + isbn + '\'' +
                 ", author=" + author +
+                ", version=" + version +
                 '}';
     }
 }
@@ -0,0 +1,23 @@
+package bg.home.books.model.entity.dto;
+
+public class BookDeleteResultDTO {
+
+
+    private int deleted; // Брой реално изтрити книги
+
+    public int getDeleted() {
+        return deleted;
+    }
+
+    public BookDeleteResultDTO setDeleted(int deleted) {
+        this.deleted = deleted;
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return "BookDeleteResultDTO{" +
+                "deleted=" + deleted +
+                '}';
+    }
+}
@@ -0,0 +1,34 @@
+package bg.home.books.model.entity.dto;
+
+public class BookImportErrorDTO {
+
+
+    private int row; // Пореден номер на реда във входните данни (от 1)
+    private String message;
+
+    public int getRow() {
+        return row;
+    }
+
+    public BookImportErrorDTO setRow(int row) {
+        this.row = row;
+        return this;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public BookImportErrorDTO setMessage(String message) {
+        this.message = message;
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return "BookImportErrorDTO{" +
+                "row=" + row +
+                ", message='" + message + '\'' +
+                '}';
+    }
+}
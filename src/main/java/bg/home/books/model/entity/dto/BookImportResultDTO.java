@@ -0,0 +1,36 @@
+package bg.home.books.model.entity.dto;
+
+import java.util.List;
+
+public class BookImportResultDTO {
+
+
+    private int imported; // Брой успешно записани книги
+    private List<BookImportErrorDTO> errors; // Редовете, които не са записани, и причината
+
+    public int getImported() {
+        return imported;
+    }
+
+    public BookImportResultDTO setImported(int imported) {
+        this.imported = imported;
+        return this;
+    }
+
+    public List<BookImportErrorDTO> getErrors() {
+        return errors;
+    }
+
+    public BookImportResultDTO setErrors(List<BookImportErrorDTO> errors) {
+        this.errors = errors;
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return "BookImportResultDTO{" +
+                "imported=" + imported +
+                ", errors=" + errors +
+                '}';
+    }
+}
@@ -0,0 +1,47 @@
+package bg.home.books.model.entity.dto;
+
+import java.util.List;
+
+public class BookPageDTO {
+
+
+    private List<BookDTO> books;
+    private Long nextCursor; // ID на последната книга от страницата или null, ако няма следваща страница
+    private String nextToken; // Курсор за следващата страница при всяка подредба (за ID съвпада с nextCursor)
+
+    public List<BookDTO> getBooks() {
+        return books;
+    }
+
+    public BookPageDTO setBooks(List<BookDTO> books) {
+        this.books = books;
+        return this;
+    }
+
+    public Long getNextCursor() {
+        return nextCursor;
+    }
+
+    public BookPageDTO setNextCursor(Long nextCursor) {
+        this.nextCursor = nextCursor;
+        return this;
+    }
+
+    public String getNextToken() {
+        return nextToken;
+    }
+
+    public BookPageDTO setNextToken(String nextToken) {
+        this.nextToken = nextToken;
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return "BookPageDTO{" +
+                "books=" + books +
+                ", nextCursor=" + nextCursor +
+                ", nextToken='" + nextToken + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,36 @@
+package bg.home.books.model.entity.dto;
+
+import java.util.List;
+
+public class BookSearchPageDTO {
+
+
+    private List<BookDTO> books; // Книгите от страницата, подредени по релевантност
+    private int total; // Общ брой намерени книги
+
+    public List<BookDTO> getBooks() {
+        return books;
+    }
+
+    public BookSearchPageDTO setBooks(List<BookDTO> books) {
+        this.books = books;
+        return this;
+    }
+
+    public int getTotal() {
+        return total;
+    }
+
+    public BookSearchPageDTO setTotal(int total) {
+        this.total = total;
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return "BookSearchPageDTO{" +
+                "books=" + books +
+                ", total=" + total +
+                '}';
+    }
+}
@@ -0,0 +1,78 @@
+package bg.home.books.model.entity.dto;
+
+public class CacheStatsDTO {
+
+
+    private boolean enabled;
+    private long size;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private double hitRate;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public CacheStatsDTO setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        return this;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public CacheStatsDTO setSize(long size) {
+        this.size = size;
+        return this;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public CacheStatsDTO setHits(long hits) {
+        this.hits = hits;
+        return this;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public CacheStatsDTO setMisses(long misses) {
+        this.misses = misses;
+        return this;
+    }
+
+    public long getEvictions() {
+        return evictions;
+    }
+
+    public CacheStatsDTO setEvictions(long evictions) {
+        this.evictions = evictions;
+        return this;
+    }
+
+    public double getHitRate() {
+        return hitRate;
+    }
+
+    public CacheStatsDTO setHitRate(double hitRate) {
+        this.hitRate = hitRate;
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return "CacheStatsDTO{" +
+                "enabled=" + enabled +
+                ", size=" + size +
+                ", hits=" + hits +
+                ", misses=" + misses +
+                ", evictions=" + evictions +
+                ", hitRate=" + hitRate +
+                '}';
+    }
+}
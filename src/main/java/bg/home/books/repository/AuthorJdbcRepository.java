@@ -0,0 +1,75 @@
+package bg.home.books.repository;
+
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Директен JDBC достъп до таблицата authors за масови операции
+@Repository
+public class AuthorJdbcRepository {
+
+    private static final String INSERT_AUTHOR_SQL = "insert into authors (name) values (?)";
+    private static final String SELECT_AUTHOR_SQL = "select id, name from authors where name = ?";
+    private static final String SELECT_ALL_AUTHOR_IDS_SQL = "select id, name from authors";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public AuthorJdbcRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    // Записване на много автори с пакетни INSERT-и
+    public void insertAuthors(Collection<String> names) {
+        jdbcTemplate.batchUpdate(INSERT_AUTHOR_SQL, new ArrayList<>(names), BookJdbcRepository.BATCH_SIZE,
+                (ps, name) -> ps.setString(1, name));
+    }
+
+    // ID-тата на всички автори по име (след масово генериране на автори)
+    public Map<String, Long> findAllIds() {
+        Map<String, Long> ids = new HashMap<>();
+        jdbcTemplate.query(SELECT_ALL_AUTHOR_IDS_SQL, rs -> {
+            ids.put(rs.getString("name"), rs.getLong("id"));
+        });
+        return ids;
+    }
+
+    // Връща ID-то на автора с това име, като го създава, ако липсва
+    public Long getOrCreateId(String name) {
+        return getOrCreate(name).id();
+    }
+
+    // Връща автора с това име (ID и името, както е записано в базата), като го създава, ако липсва.
+    // Уникалният индекс по name гарантира, че при паралелни заявки ще има само един автор:
+    // загубилият INSERT получава DuplicateKeyException и прочита реда на победителя.
+    // Сравнението на имената следва collation-а на колоната (без значение на малки/главни букви),
+    // затова върнатото име може да е изписано различно от подаденото.
+    public AuthorRef getOrCreate(String name) {
+        AuthorRef author = find(name);
+        if (author != null) {
+            return author;
+        }
+
+        try {
+            jdbcTemplate.update(INSERT_AUTHOR_SQL, name);
+        } catch (DuplicateKeyException e) {
+            // Друга заявка е създала автора междувременно
+        }
+        return find(name);
+    }
+
+    private AuthorRef find(String name) {
+        List<AuthorRef> authors = jdbcTemplate.query(SELECT_AUTHOR_SQL,
+                (rs, rowNum) -> new AuthorRef(rs.getLong("id"), rs.getString("name")), name);
+        return authors.isEmpty() ? null : authors.get(0);
+    }
+
+    // ID и име на автор, както са записани в базата
+    public record AuthorRef(Long id, String name) {
+    }
+}
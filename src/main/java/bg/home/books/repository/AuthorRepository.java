@@ -1,13 +1,27 @@
 package bg.home.books.repository;
 
 import bg.home.books.model.entity.AuthorEntity;
+import bg.home.books.model.entity.dto.AuthorSummaryDTO;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface AuthorRepository extends JpaRepository<AuthorEntity, Long> {
 
     Optional<AuthorEntity> findByName(String name);
+
+    // Всички автори с някое от подадените имена - една заявка с IN
+    List<AuthorEntity> findAllByNameIn(Collection<String> names);
+
+    // Страница автори с броя на книгите им - една заявка с GROUP BY; join-ът не зарежда колекцията books
+    @Query("select new bg.home.books.model.entity.dto.AuthorSummaryDTO(a.id, a.name, count(b.id)) " +
+            "from AuthorEntity a left join a.books b where a.id > :after group by a.id, a.name order by a.id")
+    List<AuthorSummaryDTO> findSummaryPageAfter(@Param("after") Long after, Pageable pageable);
 }
@@ -0,0 +1,135 @@
+package bg.home.books.repository;
+
+import bg.home.books.model.entity.dto.BookDTO;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+// Директен JDBC достъп до таблицата books за масови операции, при които JPA не може да групира заявките
+@Repository
+public class BookJdbcRepository {
+
+    static final int BATCH_SIZE = 500; // Брой редове в един JDBC пакет
+
+    private static final String INSERT_BOOK_SQL = "insert into books (title, isbn, author_id) values (?, ?, ?)";
+    private static final String CATALOG_EXISTS_SQL =
+            "select case when exists (select 1 from books) or exists (select 1 from authors) then 1 else 0 end";
+    private static final String[] GENERATED_KEY_COLUMNS = {"id"}; // Връщаме само генерираното ID
+    private static final String CURRENT_TIMESTAMP_SQL = "select current_timestamp(6)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public BookJdbcRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    // Текущото време по часовника на базата - същият, по който се попълват updated_at и deleted_at
+    public Instant currentTimestamp() {
+        return jdbcTemplate.queryForObject(CURRENT_TIMESTAMP_SQL, Timestamp.class).toInstant();
+    }
+
+    // Записване на много книги с пакетни INSERT-и; authorIds съдържа ID-то на всеки автор по име.
+    // Връща генерираните ID-та в реда на подадените книги.
+    public List<Long> insertBooks(List<BookDTO> books, Map<String, Long> authorIds) {
+        return jdbcTemplate.execute((ConnectionCallback<List<Long>>) connection -> {
+            List<Long> ids = new ArrayList<>(books.size());
+            try (PreparedStatement ps = connection.prepareStatement(INSERT_BOOK_SQL, GENERATED_KEY_COLUMNS)) {
+                for (int start = 0; start < books.size(); start += BATCH_SIZE) {
+                    for (BookDTO book : books.subList(start, Math.min(start + BATCH_SIZE, books.size()))) {
+                        setParameters(ps, book, authorIds);
+                        ps.addBatch();
+                    }
+                    ps.executeBatch();
+                    try (ResultSet keys = ps.getGeneratedKeys()) {
+                        while (keys.next()) {
+                            ids.add(keys.getLong(1));
+                        }
+                    }
+                }
+            }
+            return ids;
+        });
+    }
+
+    // Записване на много книги без връщане на ID-тата (генериране на данни); редовете са {title, isbn, authorId}.
+    // С rewriteBatchedStatements=true драйверът на MySQL праща всеки пакет като един многоредов INSERT.
+    public void insertBookRows(List<Object[]> rows) {
+        jdbcTemplate.batchUpdate(INSERT_BOOK_SQL, rows, BATCH_SIZE, (ps, row) -> {
+            ps.setString(1, (String) row[0]);
+            ps.setString(2, (String) row[1]);
+            ps.setLong(3, (Long) row[2]);
+        });
+    }
+
+    // Частична промяна с една заявка: UPDATE books SET <само подадените колони>, version = version + 1
+    // WHERE id = ? AND version = ?. Полетата null не се променят. Връща броя променени редове (0 или 1).
+    public int updateBookFields(Long id, long expectedVersion, String title, String isbn, Long authorId) {
+        List<String> assignments = new ArrayList<>();
+        List<Object> args = new ArrayList<>();
+        if (title != null) {
+            assignments.add("title = ?");
+            args.add(title);
+        }
+        if (isbn != null) {
+            assignments.add("isbn = ?");
+            args.add(isbn);
+        }
+        if (authorId != null) {
+            assignments.add("author_id = ?");
+            args.add(authorId);
+        }
+        assignments.add("version = version + 1");
+        args.add(id);
+        args.add(expectedVersion);
+
+        return jdbcTemplate.update("update books set " + String.join(", ", assignments) + " where id = ? and version = ?",
+                args.toArray());
+    }
+
+    // Следи за книгите, които предстои да бъдат изтрити - само за съществуващите редове, с една заявка.
+    // Трябва да се извика в същата транзакция преди DELETE-а. Връща броя записани следи.
+    public int insertTombstones(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        String placeholders = String.join(", ", Collections.nCopies(ids.size(), "?"));
+        return jdbcTemplate.update("insert into book_tombstones (book_id) select id from books where id in ("
+                + placeholders + ")", ids.toArray());
+    }
+
+    // Дали в базата има поне една книга или автор - една заявка, която спира на първия намерен ред
+    public boolean catalogExists() {
+        Integer exists = jdbcTemplate.queryForObject(CATALOG_EXISTS_SQL, Integer.class);
+        return exists != null && exists == 1;
+    }
+
+    // Записване на една книга (използва се, когато пакетът се провали и търсим грешния ред)
+    public Long insertBook(BookDTO book, Map<String, Long> authorIds) {
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.update(connection -> {
+            PreparedStatement ps = connection.prepareStatement(INSERT_BOOK_SQL, GENERATED_KEY_COLUMNS);
+            setParameters(ps, book, authorIds);
+            return ps;
+        }, keyHolder);
+        return keyHolder.getKey().longValue();
+    }
+
+    private static void setParameters(PreparedStatement ps, BookDTO book, Map<String, Long> authorIds) throws SQLException {
+        ps.setString(1, book.getTitle());
+        ps.setString(2, book.getIsbn());
+        ps.setLong(3, authorIds.get(book.getAuthor().getName()));
+    }
+}
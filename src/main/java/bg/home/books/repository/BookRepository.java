@@ -1,9 +1,104 @@
 package bg.home.books.repository;
 
 import bg.home.books.model.entity.BookEntity;
+import bg.home.books.model.entity.dto.BookChangeDTO;
+import bg.home.books.model.entity.dto.BookDTO;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
 
 @Repository
 public interface BookRepository extends JpaRepository<BookEntity, Long> {
+
+    // Всички книги като DTO проекции с една заявка (join към авторите, без N+1)
+    @Transactional(readOnly = true) // Сервизът обединява извикванията - чакащите не държат транзакция
+    @Query("select new bg.home.books.model.entity.dto.BookDTO(b.id, b.title, b.isbn, a.name, b.version) " +
+            "from BookEntity b left join b.author a order by b.id")
+    List<BookDTO> findAllBookDTOs();
+
+    // Seek заявка по първичния ключ: WHERE id > ? ORDER BY id LIMIT ? (без OFFSET)
+    @Query("select new bg.home.books.model.entity.dto.BookDTO(b.id, b.title, b.isbn, a.name, b.version) " +
+            "from BookEntity b left join b.author a where b.id > :after order by b.id")
+    List<BookDTO> findPageAfter(@Param("after") Long after, Pageable pageable);
+
+    // Seek заявка в обратен ред: WHERE id < ? ORDER BY id DESC LIMIT ? (най-новите книги първи)
+    @Query("select new bg.home.books.model.entity.dto.BookDTO(b.id, b.title, b.isbn, a.name, b.version) " +
+            "from BookEntity b left join b.author a where b.id < :before order by b.id desc")
+    List<BookDTO> findPageBefore(@Param("before") Long before, Pageable pageable);
+
+    // Seek заявка по заглавие: курсорът е (заглавие, id) на последната книга, индексът ix_books_title_id
+    @Query("select new bg.home.books.model.entity.dto.BookDTO(b.id, b.title, b.isbn, a.name, b.version) " +
+            "from BookEntity b left join b.author a " +
+            "where b.title > :title or (b.title = :title and b.id > :id) order by b.title, b.id")
+    List<BookDTO> findPageByTitleAfter(@Param("title") String title, @Param("id") Long id, Pageable pageable);
+
+    // Книгите на един автор, страницирани по ID - индексът ix_books_author_id_id
+    @Query("select new bg.home.books.model.entity.dto.BookDTO(b.id, b.title, b.isbn, a.name, b.version) " +
+            "from BookEntity b join b.author a where a.id = :authorId and b.id > :after order by b.id")
+    List<BookDTO> findPageByAuthorAfter(@Param("authorId") Long authorId, @Param("after") Long after, Pageable pageable);
+
+    // Книгите, променени след курсора (момент, id) и не по-късно от until - обхождане на индекса ix_books_updated_at_id
+    @Query("select new bg.home.books.model.entity.dto.BookChangeDTO(b.id, b.title, b.isbn, a.name, b.version, b.updatedAt) " +
+            "from BookEntity b left join b.author a " +
+            "where b.updatedAt >= :at and (b.updatedAt > :at or b.id > :id) and b.updatedAt <= :until " +
+            "order by b.updatedAt, b.id")
+    List<BookChangeDTO> findChangesAfter(@Param("at") Instant at, @Param("id") Long id,
+                                         @Param("until") Instant until, Pageable pageable);
+
+    // Всички книги като поток от DTO-та през forward-only курсор; трябва да се чете в транзакция и да се затваря
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+    @Query("select new bg.home.books.model.entity.dto.BookDTO(b.id, b.title, b.isbn, a.name, b.version) " +
+            "from BookEntity b left join b.author a order by b.id")
+    Stream<BookDTO> streamAllBookDTOs();
+
+    // Всички ISBN-и като поток (за изграждане на Bloom филтъра)
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+    @Query("select b.isbn from BookEntity b")
+    Stream<String> streamAllIsbns();
+
+    // Книга по ISBN като DTO проекция - търси по уникалния индекс ux_books_isbn
+    @Transactional(readOnly = true) // Тук, а не в сервиза - отрицателният отговор на Bloom филтъра не отваря транзакция
+    @Query("select new bg.home.books.model.entity.dto.BookDTO(b.id, b.title, b.isbn, a.name, b.version) " +
+            "from BookEntity b left join b.author a where b.isbn = :isbn")
+    Optional<BookDTO> findByIsbn(@Param("isbn") String isbn);
+
+    // Една книга като DTO проекция
+    @Transactional(readOnly = true) // Тук, а не в сервиза - попаденията в BookCache не отварят транзакция
+    @Query("select new bg.home.books.model.entity.dto.BookDTO(b.id, b.title, b.isbn, a.name, b.version) " +
+            "from BookEntity b left join b.author a where b.id = :id")
+    Optional<BookDTO> findBookDTOById(@Param("id") Long id);
+
+    // Няколко книги по ID с една IN заявка (редът на резултата не е гарантиран)
+    @Transactional(readOnly = true) // Кешираните книги се взимат от BookCache без транзакция
+    @Query("select new bg.home.books.model.entity.dto.BookDTO(b.id, b.title, b.isbn, a.name, b.version) " +
+            "from BookEntity b left join b.author a where b.id in :ids")
+    List<BookDTO> findBookDTOsByIdIn(@Param("ids") Collection<Long> ids);
+
+    // ID-тата на книгите на един автор - само колоната id, без entity-та
+    @Query("select b.id from BookEntity b join b.author a where a.name = :authorName order by b.id")
+    List<Long> findIdsByAuthorName(@Param("authorName") String authorName);
+
+    // Изтриване с една DELETE ... WHERE id IN (...) заявка, без да се зареждат entity-тата; трябва транзакция
+    @Modifying
+    @Query("delete from BookEntity b where b.id in :ids")
+    int deleteAllByIdIn(@Param("ids") Collection<Long> ids);
+
+    // Само версията на книгата (за ETag), без да зареждаме реда
+    @Transactional(readOnly = true) // При запис клиентът е закачен към основната база - конфликтите виждат текущата версия
+    @Query("select b.version from BookEntity b where b.id = :id")
+    Optional<Long> findVersionById(@Param("id") Long id);
 }
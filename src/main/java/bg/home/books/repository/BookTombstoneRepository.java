@@ -0,0 +1,24 @@
+package bg.home.books.repository;
+
+import bg.home.books.model.entity.BookTombstoneEntity;
+import bg.home.books.model.entity.dto.BookChangeDTO;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.List;
+
+@Repository
+public interface BookTombstoneRepository extends JpaRepository<BookTombstoneEntity, Long> {
+
+    // Изтритите книги след курсора (момент, id) - обхождане на индекса ix_book_tombstones_deleted_at_book_id
+    @Query("select new bg.home.books.model.entity.dto.BookChangeDTO(t.bookId, t.deletedAt) " +
+            "from BookTombstoneEntity t " +
+            "where t.deletedAt >= :at and (t.deletedAt > :at or t.bookId > :id) and t.deletedAt <= :until " +
+            "order by t.deletedAt, t.bookId")
+    List<BookChangeDTO> findDeletionsAfter(@Param("at") Instant at, @Param("id") Long id,
+                                           @Param("until") Instant until, Pageable pageable);
+}
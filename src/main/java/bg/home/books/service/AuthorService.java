@@ -0,0 +1,13 @@
+package bg.home.books.service;
+
+import bg.home.books.model.entity.dto.AuthorPageDTO;
+import bg.home.books.model.entity.dto.BookPageDTO;
+
+import java.util.Optional;
+
+public interface AuthorService {
+
+    AuthorPageDTO getAuthorsPage(Long after, int limit);
+
+    Optional<BookPageDTO> getAuthorBooksPage(Long authorId, Long after, int limit);
+}
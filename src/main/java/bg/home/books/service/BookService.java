@@ -1,18 +1,57 @@
 package bg.home.books.service;
 
+import bg.home.books.model.entity.dto.BookBatchDTO;
+import bg.home.books.model.entity.dto.BookChangesDTO;
 import bg.home.books.model.entity.dto.BookDTO;
+import bg.home.books.model.entity.dto.BookImportResultDTO;
+import bg.home.books.model.entity.dto.BookPageDTO;
+import bg.home.books.model.entity.dto.BookSearchPageDTO;
+import bg.home.books.model.entity.dto.CacheStatsDTO;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 public interface BookService {
 
+    // Максимален брой книги в една страница, независимо какво е поискал клиентът
+    int MAX_PAGE_SIZE = 500;
+
     List<BookDTO> getAllBooks();
 
+    BookPageDTO getBooksPage(Long after, int limit);
+
+    BookPageDTO getBooksPage(BookSort sort, String after, int limit);
+
+    void exportBooks(Consumer<BookDTO> consumer);
+
     Optional<BookDTO> findBookById(Long id);
 
+    BookBatchDTO findBooksByIds(List<Long> ids);
+
+    Optional<BookDTO> findBookByIsbn(String isbn);
+
+    BookSearchPageDTO searchBooks(String query, int offset, int limit);
+
     BookDTO createBook(BookDTO bookDTO);
 
-    Optional<BookDTO> updateBook(Long id, BookDTO bookDTO);
+    Optional<BookDTO> updateBook(Long id, Long expectedVersion, BookDTO bookDTO);
+
+    Optional<Long> patchBook(Long id, Long expectedVersion, BookDTO changes);
+
+    BookImportResultDTO importBooks(List<BookDTO> books);
 
     void deleteBookById(Long id);
+
+    int deleteBooks(Collection<Long> ids);
+
+    int deleteBooksByAuthor(String authorName);
+
+    Optional<Long> findBookVersion(Long id);
+
+    BookChangesDTO getChanges(String since, int limit);
+
+    String getCatalogETag();
+
+    CacheStatsDTO getBookCacheStats();
 }
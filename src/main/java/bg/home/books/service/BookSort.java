@@ -0,0 +1,47 @@
+package bg.home.books.service;
+
+// Подредбите, по които може да се страницира каталогът; всяка има своя seek заявка
+public enum BookSort {
+
+    ID("id"), // По ID - в реда на добавяне
+    ID_DESC("-id"), // Най-новите книги първи
+    TITLE("title"); // По заглавие
+
+    private final String param;
+
+    BookSort(String param) {
+        this.param = param;
+    }
+
+    // Стойността на параметъра sort в URL-а
+    public String getParam() {
+        return param;
+    }
+
+    // Курсорът в каноничен вид ("007" -> "7") или null, ако е невалиден - тогава се показва първата страница.
+    // За ID е числото; за заглавие - "<id>:<заглавие>".
+    public String canonicalCursor(String after) {
+        if (after == null) {
+            return null;
+        }
+        try {
+            if (this == TITLE) {
+                int separator = after.indexOf(':');
+                return separator < 0 ? null : Long.parseLong(after.substring(0, separator)) + after.substring(separator);
+            }
+            return Long.toString(Long.parseLong(after));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    // Подредбата по стойност на параметъра; непознатите стойности дават подредба по ID
+    public static BookSort fromParam(String param) {
+        for (BookSort sort : values()) {
+            if (sort.param.equals(param)) {
+                return sort;
+            }
+        }
+        return ID;
+    }
+}
@@ -0,0 +1,57 @@
+package bg.home.books.service.event;
+
+import bg.home.books.model.entity.dto.BookDTO;
+
+// Събитие за промяна на книга; слушателите (кешове, индекси) го получават след успешен commit
+public class BookChangedEvent {
+
+    public enum Type {
+        CREATED,
+        UPDATED,
+        DELETED
+    }
+
+    private final Type type;
+    private final Long bookId;
+    // Новото състояние на книгата; null при изтриване.
+    // При частична промяна (PATCH) съдържа само ID-то, новата версия и променените полета - останалите са null.
+    private final BookDTO book;
+
+    private BookChangedEvent(Type type, Long bookId, BookDTO book) {
+        this.type = type;
+        this.bookId = bookId;
+        this.book = book;
+    }
+
+    public static BookChangedEvent created(BookDTO book) {
+        return new BookChangedEvent(Type.CREATED, book.getId(), book);
+    }
+
+    public static BookChangedEvent updated(BookDTO book) {
+        return new BookChangedEvent(Type.UPDATED, book.getId(), book);
+    }
+
+    public static BookChangedEvent deleted(Long bookId) {
+        return new BookChangedEvent(Type.DELETED, bookId, null);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public Long getBookId() {
+        return bookId;
+    }
+
+    public BookDTO getBook() {
+        return book;
+    }
+
+    @Override
+    public String toString() {
+        return "BookChangedEvent{" +
+                "type=" + type +
+                ", bookId=" + bookId +
+                '}';
+    }
+}
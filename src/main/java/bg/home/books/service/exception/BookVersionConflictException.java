@@ -0,0 +1,22 @@
+package bg.home.books.service.exception;
+
+// Хвърля се, когато книгата е променена от друг след версията, която клиентът е видял
+public class BookVersionConflictException extends RuntimeException {
+
+    private final Long id;
+    private final Long currentVersion;
+
+    public BookVersionConflictException(Long id, Long expectedVersion, Long currentVersion) {
+        super("Book " + id + " is at version " + currentVersion + ", not " + expectedVersion);
+        this.id = id;
+        this.currentVersion = currentVersion;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public Long getCurrentVersion() {
+        return currentVersion;
+    }
+}
@@ -0,0 +1,9 @@
+package bg.home.books.service.exception;
+
+// Хвърля се, когато книга със същия ISBN вече съществува
+public class DuplicateIsbnException extends RuntimeException {
+
+    public DuplicateIsbnException(String isbn) {
+        super("A book with ISBN " + isbn + " already exists");
+    }
+}
@@ -0,0 +1,39 @@
+package bg.home.books.service.impl;
+
+import bg.home.books.repository.AuthorJdbcRepository.AuthorRef;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Кеш име на автор (както е подадено в заявката) -> ID и записаното в базата име, с ограничен размер;
+// при препълване се изхвърля най-отдавна използваният запис (LRU)
+@Component
+public class AuthorIdCache {
+
+    private final Map<String, AuthorRef> authorIds;
+
+    public AuthorIdCache(@Value("${books.author-cache.max-size:10000}") int maxSize) {
+        // LinkedHashMap с access-order подрежда записите по последно използване
+        this.authorIds = Collections.synchronizedMap(new LinkedHashMap<String, AuthorRef>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, AuthorRef> eldest) {
+                return size() > maxSize;
+            }
+        });
+    }
+
+    public AuthorRef get(String authorName) {
+        return authorIds.get(authorName);
+    }
+
+    public void put(String authorName, AuthorRef author) {
+        authorIds.put(authorName, author);
+    }
+
+    public int size() {
+        return authorIds.size();
+    }
+}
@@ -0,0 +1,75 @@
+package bg.home.books.service.impl;
+
+import bg.home.books.model.entity.dto.AuthorPageDTO;
+import bg.home.books.model.entity.dto.AuthorSummaryDTO;
+import bg.home.books.model.entity.dto.BookDTO;
+import bg.home.books.model.entity.dto.BookPageDTO;
+import bg.home.books.repository.AuthorRepository;
+import bg.home.books.repository.BookRepository;
+import bg.home.books.service.AuthorService;
+import bg.home.books.service.BookService;
+import io.micrometer.core.annotation.Timed;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.Optional;
+
+// Четене на авторите само през проекции - колекцията AuthorEntity.books никога не се инициализира
+@Service
+@Transactional(readOnly = true) // Само четене - при включени реплики заявките отиват към тях
+@Timed(value = "books.service", histogram = true)
+public class AuthorServiceImpl implements AuthorService {
+
+    // Максимален брой записи в една страница, както при книгите
+    static final int MAX_PAGE_SIZE = BookService.MAX_PAGE_SIZE;
+
+    private final AuthorRepository authorRepository;
+    private final BookRepository bookRepository;
+
+    public AuthorServiceImpl(AuthorRepository authorRepository, BookRepository bookRepository) {
+        this.authorRepository = authorRepository;
+        this.bookRepository = bookRepository;
+    }
+
+    // Страница автори с броя на книгите им; after е ID на последния автор от предишната страница
+    @Override
+    public AuthorPageDTO getAuthorsPage(Long after, int limit) {
+        int pageSize = pageSize(limit);
+        // Един ред повече, за да разберем дали има следваща страница
+        List<AuthorSummaryDTO> authors = authorRepository.findSummaryPageAfter(after == null ? 0L : after,
+                PageRequest.of(0, pageSize + 1));
+
+        boolean hasMore = authors.size() > pageSize;
+        List<AuthorSummaryDTO> page = hasMore ? authors.subList(0, pageSize) : authors;
+        return new AuthorPageDTO()
+                .setAuthors(page)
+                .setNextCursor(hasMore ? page.get(page.size() - 1).getId() : null);
+    }
+
+    // Страница книги на автор; празен Optional, ако авторът не съществува
+    @Override
+    public Optional<BookPageDTO> getAuthorBooksPage(Long authorId, Long after, int limit) {
+        int pageSize = pageSize(limit);
+        List<BookDTO> books = bookRepository.findPageByAuthorAfter(authorId, after == null ? 0L : after,
+                PageRequest.of(0, pageSize + 1));
+
+        // Проверяваме автора само при празна страница - иначе книгите вече доказват, че съществува
+        if (books.isEmpty() && !authorRepository.existsById(authorId)) {
+            return Optional.empty();
+        }
+
+        boolean hasMore = books.size() > pageSize;
+        List<BookDTO> page = hasMore ? books.subList(0, pageSize) : books;
+        Long nextCursor = hasMore ? page.get(page.size() - 1).getId() : null;
+        return Optional.of(new BookPageDTO()
+                .setBooks(page)
+                .setNextCursor(nextCursor)
+                .setNextToken(nextCursor == null ? null : nextCursor.toString()));
+    }
+
+    private static int pageSize(int limit) {
+        return Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+    }
+}
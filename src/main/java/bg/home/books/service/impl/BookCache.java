@@ -0,0 +1,92 @@
+package bg.home.books.service.impl;
+
+import bg.home.books.model.entity.dto.BookDTO;
+import bg.home.books.model.entity.dto.CacheStatsDTO;
+import bg.home.books.service.event.BookChangedEvent;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.function.LongPredicate;
+
+// Read-through кеш за единични книги по ID, ограничен по размер и по време на живот (TTL)
+@Component
+public class BookCache {
+
+    private final boolean enabled;
+    private final Cache<Long, BookDTO> books;
+
+    public BookCache(@Value("${books.book-cache.enabled:true}") boolean enabled,
+                     @Value("${books.book-cache.max-size:10000}") long maxSize,
+                     @Value("${books.book-cache.ttl:10m}") Duration ttl) {
+        this.enabled = enabled;
+        this.books = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats() // Броячи за попадения, пропуски и изхвърляния
+                .build();
+    }
+
+    // Връща книгата от кеша или я зарежда с loader; липсващите книги не се кешират
+    public Optional<BookDTO> get(Long id, Function<Long, Optional<BookDTO>> loader) {
+        if (!enabled) {
+            return loader.apply(id);
+        }
+        // Caffeine зарежда всеки ключ само веднъж, дори при паралелни заявки за него
+        return Optional.ofNullable(books.get(id, key -> loader.apply(key).orElse(null)));
+    }
+
+    // Като get, но зареденият ред не се кешира, ако mayBeStale(началото на четенето) е true -
+    // напр. прочетен е от реплика, която може още да не е видяла последната промяна
+    public Optional<BookDTO> get(Long id, Function<Long, Optional<BookDTO>> loader, LongPredicate mayBeStale) {
+        if (!enabled) {
+            return loader.apply(id);
+        }
+        BookDTO[] loaded = new BookDTO[1];
+        // null от функцията не се записва в кеша; evict за същия ключ изчаква зареждането
+        BookDTO cached = books.get(id, key -> {
+            long readStart = System.nanoTime();
+            loaded[0] = loader.apply(key).orElse(null);
+            return mayBeStale.test(readStart) ? null : loaded[0];
+        });
+        return Optional.ofNullable(cached != null ? cached : loaded[0]);
+    }
+
+    // Книгата от кеша, без да я зарежда и без да се брои като попадение/пропуск; null, ако я няма
+    public BookDTO peek(Long id) {
+        return enabled ? books.policy().getIfPresentQuietly(id) : null;
+    }
+
+    public void evict(Long id) {
+        books.invalidate(id);
+    }
+
+    public void clear() {
+        books.invalidateAll();
+    }
+
+    // Изчистваме променените и изтритите книги едва след commit, за да не се върне стара стойност в кеша
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBookChanged(BookChangedEvent event) {
+        if (event.getType() != BookChangedEvent.Type.CREATED) {
+            evict(event.getBookId());
+        }
+    }
+
+    public CacheStatsDTO getStats() {
+        CacheStats stats = books.stats();
+        return new CacheStatsDTO()
+                .setEnabled(enabled)
+                .setSize(books.estimatedSize())
+                .setHits(stats.hitCount())
+                .setMisses(stats.missCount())
+                .setEvictions(stats.evictionCount())
+                .setHitRate(stats.hitRate());
+    }
+}
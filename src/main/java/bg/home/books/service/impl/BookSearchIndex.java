@@ -0,0 +1,341 @@
+package bg.home.books.service.impl;
+
+import bg.home.books.config.ReadYourWrites;
+import bg.home.books.model.entity.dto.BookDTO;
+import bg.home.books.model.entity.dto.BookSearchPageDTO;
+import bg.home.books.repository.BookRepository;
+import bg.home.books.service.event.BookChangedEvent;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+// Инвертиран индекс в паметта за търсене по думи и префикси в заглавието и автора.
+// Изгражда се при стартиране и се обновява от събитията за промени в книгите.
+@Component
+public class BookSearchIndex {
+
+    static final int MAX_RESULTS_PER_PAGE = 100;
+
+    // Тегла при класирането: съвпадение в заглавието тежи повече от съвпадение в автора,
+    // а цяла дума - повече от префикс
+    private static final double TITLE_WEIGHT = 2.0;
+    private static final double AUTHOR_WEIGHT = 1.0;
+    private static final double PREFIX_FACTOR = 0.5;
+
+    // Под тази дължина думата от заявката се търси само като цяла дума, не като префикс
+    private static final int MIN_PREFIX_LENGTH = 2;
+    // Максимален брой думи от индекса, до които се разгръща един префикс
+    private static final int MAX_PREFIX_EXPANSIONS = 256;
+
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+    private static final Pattern TOKEN_SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private final BookRepository bookRepository;
+    private final TransactionTemplate rebuildTransaction;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock(); // Много паралелни търсения, промените са изключителни
+    private Postings postings = new Postings(); // Пази се от lock; подменя се изцяло при изграждане
+    private List<BookChangedEvent> changedDuringRebuild; // Пази се от lock; не е null, докато тече изграждане
+
+    public BookSearchIndex(BookRepository bookRepository, PlatformTransactionManager transactionManager) {
+        this.bookRepository = bookRepository;
+        // Не е readOnly - индексът се изгражда от основната база, а не от реплика, която може да изостава
+        this.rebuildTransaction = new TransactionTemplate(transactionManager);
+    }
+
+    // Изграждане на индекса след стартиране (и след началните данни от DBInit).
+    // Каталогът се чете в нов индекс; промените, дошли междувременно, се прилагат отново върху него преди подмяната -
+    // иначе по-стар прочетен ред би върнал изтрита книга или старо заглавие.
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void rebuild() {
+        lock.writeLock().lock();
+        try {
+            changedDuringRebuild = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        Postings fresh = new Postings();
+        try {
+            rebuildTransaction.executeWithoutResult(status -> {
+                try (Stream<BookDTO> allBooks = bookRepository.streamAllBookDTOs()) {
+                    allBooks.forEach(fresh::put);
+                }
+            });
+        } catch (RuntimeException e) {
+            lock.writeLock().lock();
+            try {
+                changedDuringRebuild = null; // Старият индекс остава в употреба
+            } finally {
+                lock.writeLock().unlock();
+            }
+            throw e;
+        }
+
+        lock.writeLock().lock();
+        try {
+            changedDuringRebuild.forEach(event -> apply(fresh, event));
+            changedDuringRebuild = null;
+            postings = fresh;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBookChanged(BookChangedEvent event) {
+        BookChangedEvent change = event;
+        if (event.getType() != BookChangedEvent.Type.DELETED && isPartial(event.getBook()) && !contains(event.getBookId())) {
+            // Частична промяна на книга, която още не е в индекса - четем целия ред от основната база
+            // (след commit-а там вече е новият; репликата може още да не го е получила)
+            BookDTO book = ReadYourWrites.onPrimary(() -> bookRepository.findBookDTOById(event.getBookId())).orElse(null);
+            if (book == null) {
+                return; // Изтрита междувременно
+            }
+            change = BookChangedEvent.updated(book);
+        }
+
+        lock.writeLock().lock();
+        try {
+            apply(postings, change);
+            if (changedDuringRebuild != null) {
+                changedDuringRebuild.add(change);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Добавяне или подмяна на книга в индекса
+    public void index(BookDTO book) {
+        lock.writeLock().lock();
+        try {
+            postings.put(book);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Long bookId) {
+        lock.writeLock().lock();
+        try {
+            postings.remove(bookId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Търсене: всяка дума от заявката трябва да съвпадне (като цяла дума или префикс) в заглавието или автора
+    public BookSearchPageDTO search(String query, int offset, int limit) {
+        int pageOffset = Math.max(0, offset);
+        int pageSize = Math.max(1, Math.min(limit, MAX_RESULTS_PER_PAGE));
+        Set<String> queryTokens = tokenize(query);
+
+        if (queryTokens.isEmpty()) {
+            return new BookSearchPageDTO().setBooks(List.of()).setTotal(0);
+        }
+
+        lock.readLock().lock();
+        try {
+            Map<Long, Double> scores = null;
+            for (String token : queryTokens) {
+                Map<Long, Double> tokenScores = new HashMap<>();
+                score(postings.title, token, TITLE_WEIGHT, tokenScores);
+                score(postings.author, token, AUTHOR_WEIGHT, tokenScores);
+
+                scores = scores == null ? tokenScores : intersect(scores, tokenScores);
+                if (scores.isEmpty()) {
+                    break;
+                }
+            }
+
+            return new BookSearchPageDTO()
+                    .setBooks(topResults(scores, pageOffset, pageSize))
+                    .setTotal(scores.size());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return postings.books.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Малки букви и премахнати диакритични знаци (напр. "Й" -> "и", "ѝ" -> "и"), разделено на думи
+    static Set<String> tokenize(String text) {
+        Set<String> tokens = new LinkedHashSet<>();
+        if (text == null) {
+            return tokens;
+        }
+        String normalized = Normalizer.normalize(text.toLowerCase(Locale.ROOT), Normalizer.Form.NFD);
+        normalized = DIACRITICS.matcher(normalized).replaceAll("");
+        for (String token : TOKEN_SEPARATORS.split(normalized)) {
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+
+    private void score(NavigableMap<String, Set<Long>> postings, String token, double weight, Map<Long, Double> scores) {
+        Set<Long> exact = postings.get(token);
+        if (exact != null) {
+            exact.forEach(id -> scores.merge(id, weight, Double::sum));
+        }
+        if (token.length() < MIN_PREFIX_LENGTH) {
+            return;
+        }
+
+        // Думите, които започват с token, са подредени последователно в дървото
+        int expansions = 0;
+        for (Map.Entry<String, Set<Long>> entry : postings.subMap(token, false, token + Character.MAX_VALUE, false).entrySet()) {
+            if (++expansions > MAX_PREFIX_EXPANSIONS) {
+                break;
+            }
+            entry.getValue().forEach(id -> scores.merge(id, weight * PREFIX_FACTOR, Double::sum));
+        }
+    }
+
+    private static Map<Long, Double> intersect(Map<Long, Double> scores, Map<Long, Double> tokenScores) {
+        Map<Long, Double> result = new HashMap<>();
+        scores.forEach((id, score) -> {
+            Double tokenScore = tokenScores.get(id);
+            if (tokenScore != null) {
+                result.put(id, score + tokenScore);
+            }
+        });
+        return result;
+    }
+
+    // Само първите offset + limit резултата се държат в купчина, вместо да се сортират всички съвпадения
+    private List<BookDTO> topResults(Map<Long, Double> scores, int offset, int limit) {
+        Comparator<Map.Entry<Long, Double>> ranking = Map.Entry.<Long, Double>comparingByValue()
+                .thenComparing(Map.Entry.<Long, Double>comparingByKey().reversed());
+
+        int keep = offset + limit;
+        PriorityQueue<Map.Entry<Long, Double>> top = new PriorityQueue<>(ranking);
+        for (Map.Entry<Long, Double> entry : scores.entrySet()) {
+            top.offer(entry);
+            if (top.size() > keep) {
+                top.poll(); // Изхвърляме най-слабия резултат
+            }
+        }
+
+        List<Map.Entry<Long, Double>> ranked = new ArrayList<>(top);
+        ranked.sort(ranking.reversed());
+
+        List<BookDTO> page = new ArrayList<>();
+        for (int i = offset; i < ranked.size(); i++) {
+            page.add(postings.books.get(ranked.get(i).getKey()));
+        }
+        return page;
+    }
+
+    private boolean contains(Long bookId) {
+        lock.readLock().lock();
+        try {
+            return postings.books.containsKey(bookId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Прилага промяната върху target; извиква се под writeLock
+    private static void apply(Postings target, BookChangedEvent event) {
+        if (event.getType() == BookChangedEvent.Type.DELETED) {
+            target.remove(event.getBookId());
+            return;
+        }
+        BookDTO book = withUnchangedFields(target, event.getBook());
+        if (book != null) {
+            target.put(book);
+        }
+    }
+
+    // Частичната промяна носи само променените полета - останалите взимаме от индексираното копие.
+    // null, ако промяната е частична, а книгата я няма в target.
+    private static BookDTO withUnchangedFields(Postings target, BookDTO changed) {
+        if (!isPartial(changed)) {
+            return changed;
+        }
+        BookDTO current = target.books.get(changed.getId());
+        if (current == null) {
+            return null;
+        }
+        return new BookDTO(changed.getId(),
+                changed.getTitle() != null ? changed.getTitle() : current.getTitle(),
+                changed.getIsbn() != null ? changed.getIsbn() : current.getIsbn(),
+                authorName(changed) != null ? authorName(changed) : authorName(current),
+                changed.getVersion() != null ? changed.getVersion() : current.getVersion());
+    }
+
+    private static boolean isPartial(BookDTO book) {
+        return book.getTitle() == null || book.getIsbn() == null || authorName(book) == null;
+    }
+
+    private static void addPosting(NavigableMap<String, Set<Long>> postings, String token, Long bookId) {
+        postings.computeIfAbsent(token, key -> new LinkedHashSet<>()).add(bookId);
+    }
+
+    private static void removePosting(NavigableMap<String, Set<Long>> postings, String token, Long bookId) {
+        Set<Long> ids = postings.get(token);
+        if (ids != null) {
+            ids.remove(bookId);
+            if (ids.isEmpty()) {
+                postings.remove(token);
+            }
+        }
+    }
+
+    private static String authorName(BookDTO book) {
+        return book.getAuthor() != null ? book.getAuthor().getName() : null;
+    }
+
+    // Книгите и думите им в заглавието и автора (думите са подредени - префиксите са последователни в дървото)
+    private static final class Postings {
+
+        private final Map<Long, BookDTO> books = new HashMap<>();
+        private final NavigableMap<String, Set<Long>> title = new TreeMap<>();
+        private final NavigableMap<String, Set<Long>> author = new TreeMap<>();
+
+        private void put(BookDTO book) {
+            remove(book.getId());
+            books.put(book.getId(), book);
+            tokenize(book.getTitle()).forEach(token -> addPosting(title, token, book.getId()));
+            tokenize(authorName(book)).forEach(token -> addPosting(author, token, book.getId()));
+        }
+
+        private void remove(Long bookId) {
+            BookDTO previous = books.remove(bookId);
+            if (previous != null) {
+                tokenize(previous.getTitle()).forEach(token -> removePosting(title, token, bookId));
+                tokenize(authorName(previous)).forEach(token -> removePosting(author, token, bookId));
+            }
+        }
+    }
+}
@@ -1,98 +1,693 @@
 package bg.home.books.service.impl;
 
+import bg.home.books.config.ReadYourWrites;
+import bg.home.books.config.ReplicaLag;
 import bg.home.books.model.entity.BookEntity;
-import bg.home.books.model.entity.AuthorEntity;
+import bg.home.books.model.entity.dto.BookBatchDTO;
+import bg.home.books.model.entity.dto.BookChangeDTO;
+import bg.home.books.model.entity.dto.BookChangesDTO;
 import bg.home.books.model.entity.dto.BookDTO;
 import bg.home.books.model.entity.dto.AuthorDTO;
+import bg.home.books.model.entity.dto.BookImportErrorDTO;
+import bg.home.books.model.entity.dto.BookImportResultDTO;
+import bg.home.books.model.entity.dto.BookPageDTO;
+import bg.home.books.model.entity.dto.BookSearchPageDTO;
+import bg.home.books.model.entity.dto.CacheStatsDTO;
+import bg.home.books.repository.AuthorJdbcRepository;
+import bg.home.books.repository.AuthorJdbcRepository.AuthorRef;
+import bg.home.books.repository.BookJdbcRepository;
 import bg.home.books.repository.BookRepository;
+import bg.home.books.repository.BookTombstoneRepository;
 import bg.home.books.repository.AuthorRepository;
 import bg.home.books.service.BookService;
+import bg.home.books.service.BookSort;
+import bg.home.books.service.event.BookChangedEvent;
+import bg.home.books.service.exception.BookVersionConflictException;
+import bg.home.books.service.exception.DuplicateIsbnException;
+import io.micrometer.core.annotation.Timed;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 // Маркираме класа като @Service, за да може Spring да го разпознае като компонент
 @Service
+// Време и хистограма за всеки публичен метод (метрика books.service с тагове class и method)
+@Timed(value = "books.service", histogram = true)
 public class BookServiceImpl implements BookService {
 
+    // Брой редове, които импортът обработва наведнъж (една IN заявка за авторите и една транзакция)
+    static final int IMPORT_CHUNK_SIZE = 1000;
+
+    // Максимален брой ID-та в една IN заявка
+    static final int IDS_CHUNK_SIZE = 500;
+
+    // Промените от последните секунди още не се връщат от /changes: updated_at/deleted_at са моментът на заявката,
+    // а не на commit-а, и транзакция, започнала по-рано, може да се commit-не след по-нова - иначе клиентът би
+    // прескочил реда ѝ. Безопасно е, само докато транзакциите за запис са по-кратки (books.max-write-transaction).
+    public static final Duration CHANGES_SETTLE_TIME = Duration.ofSeconds(15);
+
+    private static final Comparator<BookChangeDTO> CHANGE_ORDER =
+            Comparator.comparing(BookChangeDTO::getChangedAt).thenComparing(BookChangeDTO::getBookId);
+
+    // Метрика за обединените зареждания (тагове operation и outcome: loaded, collapsed, timed_out)
+    static final String SINGLE_FLIGHT_METRIC = "books.service.single-flight";
+
+    // Максимална дължина на текстовите колони (VARCHAR(255) по подразбиране)
+    private static final int MAX_COLUMN_LENGTH = 255;
+
     private final BookRepository bookRepository;
     private final AuthorRepository authorRepository;
+    private final BookJdbcRepository bookJdbcRepository;
+    private final AuthorJdbcRepository authorJdbcRepository;
+    private final BookTombstoneRepository bookTombstoneRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final AuthorIdCache authorIdCache;
+    private final BookCache bookCache;
+    private final CatalogVersion catalogVersion;
+    private final ReplicaLag replicaLag;
+    private final BookSearchIndex bookSearchIndex;
+    private final IsbnFilter isbnFilter;
+    private final ApplicationEventPublisher eventPublisher;
+    // Едновременните заявки за един и същ ключ чакат една и съща заявка към базата (books.single-flight.*).
+    // Извикванията, закачени за основната база (ReadYourWrites), не се обединяват: зареждането, към което
+    // биха се присъединили, може да е започнато от друга нишка и да чете от реплика без последния им запис.
+    private final SingleFlight<Set<Long>, Map<Long, BookDTO>> batchLoads;
+    private final SingleFlight<Long, Optional<BookDTO>> bookLoads;
+    // Ключът е версията на каталога - извикване след запис не получава списък, започнат преди него
+    private final SingleFlight<String, List<BookDTO>> catalogLoads;
 
     // Конструктор, който инжектира зависимостите
-    public BookServiceImpl(BookRepository bookRepository, AuthorRepository authorRepository) {
+    public BookServiceImpl(BookRepository bookRepository,
+                           AuthorRepository authorRepository,
+                           BookJdbcRepository bookJdbcRepository,
+                           AuthorJdbcRepository authorJdbcRepository,
+                           BookTombstoneRepository bookTombstoneRepository,
+                           TransactionTemplate transactionTemplate,
+                           AuthorIdCache authorIdCache,
+                           BookCache bookCache,
+                           CatalogVersion catalogVersion,
+                           ReplicaLag replicaLag,
+                           BookSearchIndex bookSearchIndex,
+                           IsbnFilter isbnFilter,
+                           ApplicationEventPublisher eventPublisher,
+                           SingleFlightTimeouts singleFlightTimeouts,
+                           MeterRegistry meterRegistry) {
         this.bookRepository = bookRepository;
         this.authorRepository = authorRepository;
+        this.bookJdbcRepository = bookJdbcRepository;
+        this.authorJdbcRepository = authorJdbcRepository;
+        this.bookTombstoneRepository = bookTombstoneRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.authorIdCache = authorIdCache;
+        this.bookCache = bookCache;
+        this.catalogVersion = catalogVersion;
+        this.replicaLag = replicaLag;
+        this.bookSearchIndex = bookSearchIndex;
+        this.isbnFilter = isbnFilter;
+        this.eventPublisher = eventPublisher;
+        this.batchLoads = new SingleFlight<>(singleFlightTimeouts.getBatchMaxWait());
+        this.bookLoads = new SingleFlight<>(singleFlightTimeouts.getBookMaxWait());
+        this.catalogLoads = new SingleFlight<>(singleFlightTimeouts.getCatalogMaxWait());
+        registerSingleFlightMetrics(meterRegistry, "getAllBooks", catalogLoads);
+        registerSingleFlightMetrics(meterRegistry, "findBookById", bookLoads);
+        registerSingleFlightMetrics(meterRegistry, "findBooksByIds", batchLoads);
     }
 
-    // Извличане на всички книги като BookDTO
+    // Извличане на всички книги като BookDTO; едновременните извиквания за една и съща версия на каталога
+    // споделят една заявка, затова списъкът е само за четене
     @Override
     public List<BookDTO> getAllBooks() {
-        return bookRepository.findAll().stream()  // Взимаме всички книги от базата
-                .map(this::mapBookToDTO) // Преобразуваме всяка BookEntity в BookDTO
-                .toList(); // Конвертираме потока в списък и го връщаме
+        // Една заявка с DTO проекция
+        Supplier<List<BookDTO>> load = () -> Collections.unmodifiableList(bookRepository.findAllBookDTOs());
+        return ReadYourWrites.isPinned() ? load.get() : catalogLoads.execute(catalogVersion.current(), load);
+    }
+
+    // Извличане на една страница книги след даден курсор (ID)
+    @Override
+    @Transactional(readOnly = true) // При включени реплики - чете от реплика
+    public BookPageDTO getBooksPage(Long after, int limit) {
+        return getBooksPage(BookSort.ID, after == null ? null : after.toString(), limit);
+    }
+
+    // Извличане на една страница книги в дадена подредба; after е курсорът от предишната страница (nextToken)
+    @Override
+    @Transactional(readOnly = true) // При включени реплики - чете от реплика
+    public BookPageDTO getBooksPage(BookSort sort, String after, int limit) {
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+
+        // Взимаме един ред повече, за да разберем дали има следваща страница
+        PageRequest firstRows = PageRequest.of(0, pageSize + 1);
+        List<BookDTO> books = switch (sort) {
+            case ID -> bookRepository.findPageAfter(after == null ? 0L : Long.parseLong(after), firstRows);
+            case ID_DESC -> bookRepository.findPageBefore(after == null ? Long.MAX_VALUE : Long.parseLong(after), firstRows);
+            case TITLE -> after == null
+                    ? bookRepository.findPageByTitleAfter("", 0L, firstRows)
+                    : bookRepository.findPageByTitleAfter(titleOf(after), idOf(after), firstRows);
+        };
+
+        boolean hasMore = books.size() > pageSize;
+        List<BookDTO> page = hasMore ? books.subList(0, pageSize) : books;
+        BookDTO last = hasMore ? page.get(page.size() - 1) : null;
+        String nextToken = null;
+        if (last != null) {
+            nextToken = sort == BookSort.TITLE ? last.getId() + ":" + last.getTitle() : last.getId().toString();
+        }
+
+        return new BookPageDTO()
+                .setBooks(page)
+                .setNextCursor(last != null && sort == BookSort.ID ? last.getId() : null)
+                .setNextToken(nextToken);
+    }
+
+    // Обхождане на целия каталог ред по ред, без да го държим в паметта
+    @Override
+    @Transactional(readOnly = true) // Курсорът е валиден само докато транзакцията е отворена
+    public void exportBooks(Consumer<BookDTO> consumer) {
+        try (Stream<BookDTO> books = bookRepository.streamAllBookDTOs()) { // Затваряме курсора след обхождането
+            books.forEach(consumer);
+        }
     }
 
     // Търсене на книга по ID
     @Override
     public Optional<BookDTO> findBookById(Long id) {
-        return bookRepository.findById(id) // Търсим книгата по ID
-                .map(this::mapBookToDTO); // Ако я намерим, я преобразуваме в DTO
+        if (bookCache.peek(id) != null) {
+            // Попадение - без обединяване
+            return bookCache.get(id, bookRepository::findBookDTOById, replicaLag::mayBeStale);
+        }
+        // Пропуск: едновременните извиквания за същата книга чакат едно зареждане (с ограничено чакане).
+        // Ред, който може да е от изоставаща реплика, се връща, но не остава в кеша.
+        Supplier<Optional<BookDTO>> load = () -> bookCache.get(id, bookRepository::findBookDTOById, replicaLag::mayBeStale);
+        return ReadYourWrites.isPinned() ? load.get() : bookLoads.execute(id, load);
+    }
+
+    // Няколко книги по ID наведнъж - в реда на заявката, с изрично отбелязани липсващи
+    @Override
+    public BookBatchDTO findBooksByIds(List<Long> ids) {
+        Set<Long> distinctIds = new TreeSet<>(ids); // Сортиран ключ - същите ID-та в друг ред също се обединяват
+        Map<Long, BookDTO> found = ReadYourWrites.isPinned()
+                ? loadBooksByIds(distinctIds)
+                : batchLoads.execute(distinctIds, () -> loadBooksByIds(distinctIds));
+
+        List<BookDTO> books = new ArrayList<>(ids.size());
+        List<Long> missingIds = new ArrayList<>();
+        for (Long id : ids) {
+            BookDTO book = found.get(id);
+            books.add(book);
+            if (book == null) {
+                missingIds.add(id);
+            }
+        }
+        return new BookBatchDTO()
+                .setBooks(books)
+                .setMissingIds(missingIds);
+    }
+
+    // Търсене на книга по ISBN; сигурните пропуски се отсяват от Bloom филтъра без заявка към базата
+    @Override
+    public Optional<BookDTO> findBookByIsbn(String isbn) {
+        if (!isbnFilter.mightContain(isbn)) {
+            return Optional.empty();
+        }
+        return bookRepository.findByIsbn(isbn);
+    }
+
+    // Търсене по заглавие и автор в индекса в паметта, без заявка към базата
+    @Override
+    public BookSearchPageDTO searchBooks(String query, int offset, int limit) {
+        return bookSearchIndex.search(query, offset, limit);
     }
 
     // Създаване на нова книга
     @Override
     public BookDTO createBook(BookDTO bookDTO) {
-        // Проверяваме дали авторът съществува, ако не – го създаваме
-        AuthorEntity author = authorRepository.findByName(bookDTO.getAuthor().getName())
-                .orElseGet(() -> createAuthor(bookDTO.getAuthor().getName()));
+        checkIsbnIsFree(bookDTO.getIsbn(), null); // Не допускаме две книги с един и същ ISBN
 
-        // Създаваме нов BookEntity със стойностите от DTO-то
+        // Създаваме нов BookEntity със стойностите от DTO-то; авторът се намира или създава по име
+        AuthorRef author = resolveAuthor(bookDTO.getAuthor().getName());
         BookEntity newBook = new BookEntity()
-                .setAuthor(author)
+                .setAuthor(authorRepository.getReferenceById(author.id())) // Само референция (proxy), без SELECT
                 .setIsbn(bookDTO.getIsbn())
                 .setTitle(bookDTO.getTitle());
 
-        // Запазваме книгата в базата и връщаме DTO версията ѝ
-        return mapBookToDTO(bookRepository.save(newBook));
+        // Запазваме книгата в базата и връщаме DTO версията ѝ с името на автора, както е записано в базата
+        BookDTO createdBook = mapBookToDTO(saveBook(newBook), author.name());
+        eventPublisher.publishEvent(BookChangedEvent.created(createdBook));
+        return createdBook;
     }
 
-    // Обновяване на съществуваща книга по ID
+    // Обновяване на съществуваща книга по ID. С expectedVersion записът минава само ако книгата е още в тази версия;
+    // без нея се записва върху прочетената версия. И в двата случая чужд запис между четенето и записа е конфликт.
     @Override
-    public Optional<BookDTO> updateBook(Long id, BookDTO bookDTO) {
+    public Optional<BookDTO> updateBook(Long id, Long expectedVersion, BookDTO bookDTO) {
         return bookRepository.findById(id) // Търсим книгата по ID
                 .map(book -> {  // Ако я намерим, обновяваме данните ѝ
+                    if (expectedVersion != null && !expectedVersion.equals(book.getVersion())) {
+                        throw new BookVersionConflictException(id, expectedVersion, book.getVersion());
+                    }
+                    if (!Objects.equals(bookDTO.getIsbn(), book.getIsbn())) {
+                        checkIsbnIsFree(bookDTO.getIsbn(), id); // Новият ISBN не трябва да е зает от друга книга
+                    }
+
+                    Long readVersion = book.getVersion();
                     book.setTitle(bookDTO.getTitle());
                     book.setIsbn(bookDTO.getIsbn());
-
-                    // Проверяваме дали авторът съществува, ако не – го създаваме
-                    book.setAuthor(authorRepository.findByName(bookDTO.getAuthor().getName())
-                            .orElseGet(() -> createAuthor(bookDTO.getAuthor().getName())));
+                    AuthorRef author = resolveAuthor(bookDTO.getAuthor().getName()); // Намираме или създаваме автора по име
+                    book.setAuthor(authorRepository.getReferenceById(author.id()));
 
                     // Запазваме променената книга и връщаме нейното DTO
-                    return mapBookToDTO(bookRepository.save(book));
+                    BookEntity saved;
+                    try {
+                        saved = saveBook(book);
+                    } catch (ObjectOptimisticLockingFailureException e) {
+                        // @Version на реда е вдигнат от друга заявка, след като сме го прочели
+                        Long currentVersion = bookRepository.findVersionById(id).orElse(null);
+                        if (currentVersion == null) {
+                            return null; // Междувременно е изтрита - 404
+                        }
+                        throw new BookVersionConflictException(id, readVersion, currentVersion);
+                    }
+                    BookDTO updatedBook = mapBookToDTO(saved, author.name());
+                    eventPublisher.publishEvent(BookChangedEvent.updated(updatedBook)); // Кешът се изчиства след записа
+                    return updatedBook;
                 });
     }
 
+    // Частична промяна само на подадените полета (null = без промяна) с една UPDATE заявка, без предварително четене.
+    // Връща новата версия; празен Optional, ако книгата не съществува; BookVersionConflictException при чужда промяна.
+    @Override
+    public Optional<Long> patchBook(Long id, Long expectedVersion, BookDTO changes) {
+        AuthorRef author = changes.getAuthor() == null || changes.getAuthor().getName() == null
+                ? null : resolveAuthor(changes.getAuthor().getName());
+        Long authorId = author == null ? null : author.id();
+
+        int updated;
+        try {
+            updated = bookJdbcRepository.updateBookFields(id, expectedVersion, changes.getTitle(), changes.getIsbn(), authorId);
+        } catch (DuplicateKeyException e) {
+            throw new DuplicateIsbnException(changes.getIsbn()); // Уникалният индекс по ISBN пази от дубликати
+        }
+
+        if (updated == 0) {
+            // Само при неуспех проверяваме дали книгата липсва или версията ѝ е друга
+            Long currentVersion = bookRepository.findVersionById(id).orElse(null);
+            if (currentVersion == null) {
+                return Optional.empty();
+            }
+            throw new BookVersionConflictException(id, expectedVersion, currentVersion);
+        }
+
+        long newVersion = expectedVersion + 1;
+        // Събитието носи само променените полета - слушателите ги прилагат върху своето копие
+        BookDTO patched = new BookDTO(id, changes.getTitle(), changes.getIsbn(), author == null ? null : author.name(), newVersion);
+        eventPublisher.publishEvent(BookChangedEvent.updated(patched));
+        return Optional.of(newVersion);
+    }
+
+    // Масов импорт на книги: авторите се намират с една заявка, книгите се записват на JDBC пакети
+    @Override
+    public BookImportResultDTO importBooks(List<BookDTO> books) {
+        List<BookImportErrorDTO> errors = new ArrayList<>();
+        int imported = 0;
+
+        // Обработваме входа на порции, за да е ограничен размерът на IN заявката и на транзакцията
+        for (int start = 0; start < books.size(); start += IMPORT_CHUNK_SIZE) {
+            List<BookDTO> chunk = books.subList(start, Math.min(start + IMPORT_CHUNK_SIZE, books.size()));
+            imported += importChunk(chunk, start, errors);
+        }
+
+        return new BookImportResultDTO()
+                .setImported(imported)
+                .setErrors(errors);
+    }
+
     // Изтриване на книга по ID
     @Override
     public void deleteBookById(Long id) {
-        bookRepository.deleteById(id);
+        transactionTemplate.execute(status -> {
+            bookJdbcRepository.insertTombstones(List.of(id)); // Следа за синхронизацията - в същата транзакция
+            bookRepository.deleteById(id);
+            return null;
+        });
+        eventPublisher.publishEvent(BookChangedEvent.deleted(id)); // Кешът се изчиства след изтриването
+    }
+
+    // Масово изтриване по ID-та: DELETE ... WHERE id IN (...) на порции, всяка в своя транзакция.
+    // За всяко ID се публикува събитие, така че кешовете и индексите го изчистват след commit-а на порцията.
+    @Override
+    public int deleteBooks(Collection<Long> ids) {
+        List<Long> distinctIds = new ArrayList<>(new LinkedHashSet<>(ids));
+        int deleted = 0;
+        for (int start = 0; start < distinctIds.size(); start += IDS_CHUNK_SIZE) {
+            List<Long> chunk = distinctIds.subList(start, Math.min(start + IDS_CHUNK_SIZE, distinctIds.size()));
+            Integer chunkDeleted = transactionTemplate.execute(status -> {
+                bookJdbcRepository.insertTombstones(chunk);
+                int count = bookRepository.deleteAllByIdIn(chunk);
+                chunk.forEach(id -> eventPublisher.publishEvent(BookChangedEvent.deleted(id)));
+                return count;
+            });
+            deleted += chunkDeleted == null ? 0 : chunkDeleted;
+        }
+        return deleted;
+    }
+
+    // Изтриване на всички книги на автор - взимаме само ID-тата им и ги трием на порции
+    @Override
+    public int deleteBooksByAuthor(String authorName) {
+        return deleteBooks(bookRepository.findIdsByAuthorName(authorName));
+    }
+
+    // Текуща версия на книгата без зареждане на реда; кешираната книга не струва заявка
+    @Override
+    public Optional<Long> findBookVersion(Long id) {
+        BookDTO cached = bookCache.peek(id);
+        if (cached != null) {
+            return Optional.ofNullable(cached.getVersion());
+        }
+        return bookRepository.findVersionById(id);
+    }
+
+    // Промените след токена since: променените книги и следите от изтритите, подредени по (момент, id).
+    // И двете заявки обхождат индекс от курсора нататък, така че цената зависи от броя промени, а не от каталога.
+    // Не е readOnly нарочно: реплика, изоставаща повече от CHANGES_SETTLE_TIME, би върнала токен след липсващи редове.
+    @Override
+    public BookChangesDTO getChanges(String since, int limit) {
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        Instant at = since == null ? Instant.EPOCH : changedAtOf(since);
+        long id = since == null ? 0L : changeIdOf(since);
+        // По часовника на базата, а не на JVM-а - иначе разминаването между двата би изместило границата
+        Instant until = bookJdbcRepository.currentTimestamp().minus(CHANGES_SETTLE_TIME);
+
+        // По един ред повече от всяка таблица - след сливането първите pageSize са точно следващите промени
+        PageRequest rows = PageRequest.of(0, pageSize + 1);
+        List<BookChangeDTO> changes = new ArrayList<>(bookRepository.findChangesAfter(at, id, until, rows));
+        changes.addAll(bookTombstoneRepository.findDeletionsAfter(at, id, until, rows));
+        changes.sort(CHANGE_ORDER);
+
+        boolean hasMore = changes.size() > pageSize;
+        List<BookChangeDTO> page = hasMore ? changes.subList(0, pageSize) : changes;
+        BookChangeDTO last = page.isEmpty() ? null : page.get(page.size() - 1);
+        return new BookChangesDTO()
+                .setChanges(page)
+                .setNextToken(last == null ? changeToken(at, id) : changeToken(last.getChangedAt(), last.getBookId()))
+                .setHasMore(hasMore);
+    }
+
+    // ETag за целия каталог - сменя се при всяка промяна на която и да е книга
+    @Override
+    public String getCatalogETag() {
+        return catalogVersion.current();
+    }
+
+    // Статистика на кеша за единични книги
+    @Override
+    public CacheStatsDTO getBookCacheStats() {
+        return bookCache.getStats();
+    }
+
+    // Кешираните книги се взимат от кеша, останалите - с IN заявки на порции по IDS_CHUNK_SIZE
+    private Map<Long, BookDTO> loadBooksByIds(Set<Long> ids) {
+        Map<Long, BookDTO> found = new HashMap<>();
+        List<Long> toLoad = new ArrayList<>();
+        for (Long id : ids) {
+            BookDTO cached = bookCache.peek(id);
+            if (cached != null) {
+                found.put(id, cached);
+            } else {
+                toLoad.add(id);
+            }
+        }
+
+        for (int start = 0; start < toLoad.size(); start += IDS_CHUNK_SIZE) {
+            List<Long> chunk = toLoad.subList(start, Math.min(start + IDS_CHUNK_SIZE, toLoad.size()));
+            bookRepository.findBookDTOsByIdIn(chunk).forEach(book -> found.put(book.getId(), book));
+        }
+        return found;
+    }
+
+    // Курсорът по заглавие е "<id>:<заглавие>" - ID-то е първо, защото заглавието може да съдържа ':'
+    private static Long idOf(String titleCursor) {
+        int separator = titleCursor.indexOf(':');
+        if (separator < 0) {
+            throw new IllegalArgumentException("Invalid page cursor: " + titleCursor);
+        }
+        return Long.parseLong(titleCursor.substring(0, separator));
+    }
+
+    private static String titleOf(String titleCursor) {
+        return titleCursor.substring(titleCursor.indexOf(':') + 1);
+    }
+
+    private static void registerSingleFlightMetrics(MeterRegistry meterRegistry, String operation, SingleFlight<?, ?> flight) {
+        FunctionCounter.builder(SINGLE_FLIGHT_METRIC, flight, SingleFlight::loadCount)
+                .description("Calls that loaded from the database")
+                .tag("operation", operation).tag("outcome", "loaded")
+                .register(meterRegistry);
+        FunctionCounter.builder(SINGLE_FLIGHT_METRIC, flight, SingleFlight::collapsedCount)
+                .description("Calls that shared an in-flight load")
+                .tag("operation", operation).tag("outcome", "collapsed")
+                .register(meterRegistry);
+        FunctionCounter.builder(SINGLE_FLIGHT_METRIC, flight, SingleFlight::timeoutCount)
+                .description("Calls that gave up waiting for an in-flight load")
+                .tag("operation", operation).tag("outcome", "timed_out")
+                .register(meterRegistry);
+    }
+
+    // Токен за /changes: "<микросекунди от епохата>-<id>" на последната върната промяна
+    static String changeToken(Instant at, long id) {
+        return (at.getEpochSecond() * 1_000_000 + at.getNano() / 1_000) + "-" + id;
+    }
+
+    private static Instant changedAtOf(String token) {
+        int separator = token.indexOf('-');
+        if (separator < 0) {
+            throw new IllegalArgumentException("Invalid change token: " + token);
+        }
+        long micros = Long.parseLong(token.substring(0, separator));
+        return Instant.ofEpochSecond(Math.floorDiv(micros, 1_000_000), Math.floorMod(micros, 1_000_000) * 1_000L);
+    }
+
+    private static long changeIdOf(String token) {
+        return Long.parseLong(token.substring(token.indexOf('-') + 1));
+    }
+
+    // Импорт на една порция; offset е позицията на първия ред от порцията във входа
+    private int importChunk(List<BookDTO> chunk, int offset, List<BookImportErrorDTO> errors) {
+        List<BookDTO> validBooks = new ArrayList<>();
+        List<Integer> rowNumbers = new ArrayList<>();
+
+        // Невалидните редове се отчитат като грешки и не стигат до базата
+        for (int i = 0; i < chunk.size(); i++) {
+            String error = validateImportRow(chunk.get(i));
+            if (error != null) {
+                errors.add(new BookImportErrorDTO().setRow(offset + i + 1).setMessage(error));
+            } else {
+                validBooks.add(chunk.get(i));
+                rowNumbers.add(offset + i + 1);
+            }
+        }
+
+        Set<String> authorNames = new LinkedHashSet<>();
+        validBooks.forEach(book -> authorNames.add(book.getAuthor().getName()));
+        Map<String, AuthorRef> authors = resolveAuthors(authorNames);
+        Map<String, Long> authorIds = new HashMap<>();
+        authors.forEach((name, author) -> authorIds.put(name, author.id()));
+
+        // Редовете, чийто автор не е успял да се създаде, също са грешки
+        List<BookDTO> booksToInsert = new ArrayList<>();
+        List<Integer> rowsToInsert = new ArrayList<>();
+        for (int i = 0; i < validBooks.size(); i++) {
+            if (authorIds.containsKey(validBooks.get(i).getAuthor().getName())) {
+                booksToInsert.add(validBooks.get(i));
+                rowsToInsert.add(rowNumbers.get(i));
+            } else {
+                errors.add(new BookImportErrorDTO().setRow(rowNumbers.get(i)).setMessage("Author could not be created"));
+            }
+        }
+
+        if (booksToInsert.isEmpty()) {
+            return 0;
+        }
+
+        try {
+            // Цялата порция в една транзакция; при грешка тя се връща назад изцяло
+            List<Long> ids = transactionTemplate.execute(status -> bookJdbcRepository.insertBooks(booksToInsert, authorIds));
+            for (int i = 0; i < booksToInsert.size(); i++) {
+                publishImported(booksToInsert.get(i), ids.get(i), authors);
+            }
+            return booksToInsert.size();
+        } catch (DataAccessException e) {
+            // Пакетът е отхвърлен - записваме редовете един по един, за да открием кои са проблемните
+            int inserted = 0;
+            for (int i = 0; i < booksToInsert.size(); i++) {
+                try {
+                    publishImported(booksToInsert.get(i), bookJdbcRepository.insertBook(booksToInsert.get(i), authorIds),
+                            authors);
+                    inserted++;
+                } catch (DataAccessException rowError) {
+                    errors.add(new BookImportErrorDTO()
+                            .setRow(rowsToInsert.get(i))
+                            .setMessage(rowError.getMostSpecificCause().getMessage()));
+                }
+            }
+            return inserted;
+        }
+    }
+
+    // Импортираните книги минават покрай JPA, затова уведомяваме слушателите изрично - с името на автора,
+    // както е записано в базата, а не както е изписано във файла
+    private void publishImported(BookDTO book, Long id, Map<String, AuthorRef> authors) {
+        eventPublisher.publishEvent(BookChangedEvent.created(
+                new BookDTO(id, book.getTitle(), book.getIsbn(), authors.get(book.getAuthor().getName()).name(), 0L)));
+    }
+
+    // Проверка на един ред от импорта; връща текст на грешката или null, ако редът е валиден
+    private String validateImportRow(BookDTO book) {
+        if (book == null) {
+            return "Empty row";
+        }
+        if (isBlank(book.getTitle()) || isBlank(book.getIsbn())
+                || book.getAuthor() == null || isBlank(book.getAuthor().getName())) {
+            return "Title, author and ISBN are required";
+        }
+        if (book.getTitle().length() > MAX_COLUMN_LENGTH || book.getIsbn().length() > MAX_COLUMN_LENGTH
+                || book.getAuthor().getName().length() > MAX_COLUMN_LENGTH) {
+            return "Title, author and ISBN must be at most " + MAX_COLUMN_LENGTH + " characters";
+        }
+        return null;
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.isBlank();
+    }
+
+    // Намиране на авторите по име; липсващите се създават с един пакетен INSERT.
+    // Ключът е името, както е подадено, а стойността - ID-то и името, както е записано в базата.
+    private Map<String, AuthorRef> resolveAuthors(Collection<String> authorNames) {
+        Map<String, AuthorRef> authors = findAuthors(authorNames);
+
+        List<String> missingNames = authorNames.stream()
+                .filter(name -> !authors.containsKey(name))
+                .toList();
+
+        if (!missingNames.isEmpty()) {
+            try {
+                authorJdbcRepository.insertAuthors(missingNames);
+                authors.putAll(findAuthors(missingNames));
+            } catch (DataAccessException e) {
+                // Пакетът е отхвърлен (напр. паралелен импорт е създал някой от авторите) - минаваме по един
+                for (String name : missingNames) {
+                    try {
+                        authors.put(name, authorJdbcRepository.getOrCreate(name));
+                    } catch (DataAccessException nameError) {
+                        // Авторът не е записан - редовете му ще бъдат отчетени като грешки
+                    }
+                }
+            }
+        }
+
+        return authors;
+    }
+
+    // Колоната сравнява имената без значение на малки/главни букви, затова "ИВАН ВАЗОВ" от файла намира
+    // записания "Иван Вазов" - съпоставяме ги по същия начин, а не по точното изписване
+    private Map<String, AuthorRef> findAuthors(Collection<String> authorNames) {
+        Map<String, AuthorRef> authors = new HashMap<>();
+        if (authorNames.isEmpty()) {
+            return authors;
+        }
+        Map<String, AuthorRef> stored = new HashMap<>();
+        authorRepository.findAllByNameIn(authorNames).forEach(author -> stored.putIfAbsent(
+                author.getName().toLowerCase(Locale.ROOT), new AuthorRef(author.getId(), author.getName())));
+        for (String name : authorNames) {
+            AuthorRef author = stored.get(name.toLowerCase(Locale.ROOT));
+            if (author != null) {
+                authors.put(name, author);
+            }
+        }
+        return authors;
+    }
+
+    // Запис през JPA. Предварителната проверка на ISBN не пази от две едновременни заявки със същия ISBN -
+    // надпреварата се решава от уникалния индекс ux_books_isbn и загубилата заявка получава DuplicateIsbnException.
+    private BookEntity saveBook(BookEntity book) {
+        try {
+            return bookRepository.save(book);
+        } catch (DataIntegrityViolationException e) {
+            if (e instanceof DuplicateKeyException || isIsbnTaken(book.getIsbn(), book.getId())) {
+                throw new DuplicateIsbnException(book.getIsbn());
+            }
+            throw e; // Друго ограничение - не е дубликат на ISBN
+        }
+    }
+
+    // Проверка в основната база (транзакция за запис не отива към реплика), без Bloom филтъра -
+    // печелившият запис може да е направен от друга инстанция
+    private boolean isIsbnTaken(String isbn, Long excludeId) {
+        Boolean taken = transactionTemplate.execute(status -> bookRepository.findByIsbn(isbn)
+                .filter(existing -> !existing.getId().equals(excludeId))
+                .isPresent());
+        return Boolean.TRUE.equals(taken);
+    }
+
+    // Проверка за зает ISBN през Bloom филтъра и уникалния индекс; excludeId е книгата, която се редактира
+    private void checkIsbnIsFree(String isbn, Long excludeId) {
+        boolean taken = findBookByIsbn(isbn)
+                .filter(existing -> !existing.getId().equals(excludeId))
+                .isPresent();
+        if (taken) {
+            throw new DuplicateIsbnException(isbn);
+        }
     }
 
-    // Създаване на нов автор, ако не съществува
-    private AuthorEntity createAuthor(String authorName) {
-        return authorRepository.save(new AuthorEntity().setName(authorName));
+    // Намиране на автор по име без заявка при кеширано име; липсващият автор се създава безопасно при паралелни заявки.
+    // Уникалният индекс не различава малки и главни букви, затова върнатото име е това от базата, а не подаденото.
+    private AuthorRef resolveAuthor(String authorName) {
+        AuthorRef author = authorIdCache.get(authorName);
+        if (author == null) {
+            author = authorJdbcRepository.getOrCreate(authorName);
+            authorIdCache.put(authorName, author);
+        }
+        return author;
     }
 
     // Преобразуване на BookEntity към BookDTO
-    private BookDTO mapBookToDTO(BookEntity bookEntity) {
-        AuthorDTO authorDTO = new AuthorDTO().setName(bookEntity.getAuthor().getName());
+    // Името на автора се подава отвън, за да не се зарежда lazy референцията към автора
+    static BookDTO mapBookToDTO(BookEntity bookEntity, String authorName) {
+        AuthorDTO authorDTO = new AuthorDTO().setName(authorName);
 
         return new BookDTO()
                 .setId(bookEntity.getId())
                 .setAuthor(authorDTO)
                 .setTitle(bookEntity.getTitle())
-                .setIsbn(bookEntity.getIsbn());
+                .setIsbn(bookEntity.getIsbn())
+                .setVersion(bookEntity.getVersion());
     }
 }
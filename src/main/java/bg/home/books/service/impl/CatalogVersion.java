@@ -0,0 +1,29 @@
+package bg.home.books.service.impl;
+
+import bg.home.books.service.event.BookChangedEvent;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// Брояч на промените в каталога, от който се строи ETag за списъците с книги.
+// Префиксът е различен при всяко стартиране, за да не съвпада ETag от предишен процес.
+// Броят се само записите, направени през тази инстанция (събитията й BookChangedEvent). Приложението приема, че е
+// единственият, който пише в каталога: запис от друга инстанция или външен процес не сменя версията, така че
+// клиентите получават 304 със стария списък, а кешът на началната страница я показва без промяната до следващия
+// локален запис или рестарт. При няколко пишещи инстанции версията трябва да идва от базата.
+@Component
+public class CatalogVersion {
+
+    private final String epoch = Long.toString(System.currentTimeMillis(), Character.MAX_RADIX);
+    private final AtomicLong changes = new AtomicLong();
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBookChanged(BookChangedEvent event) {
+        changes.incrementAndGet();
+    }
+
+    public String current() {
+        return "catalog-" + epoch + "-" + changes.get();
+    }
+}
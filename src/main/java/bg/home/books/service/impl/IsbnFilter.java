@@ -0,0 +1,108 @@
+package bg.home.books.service.impl;
+
+import bg.home.books.repository.BookRepository;
+import bg.home.books.service.event.BookChangedEvent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+// Bloom филтър с всички ISBN-и в каталога, който отговаря на сигурните пропуски без заявка към базата.
+// Изтритите книги не могат да се махнат от филтъра - те само увеличават фалшивите "може би" до следващото изграждане.
+// Филтърът научава само за записите, направени през тази инстанция. Ако в базата пишат и други инстанции или
+// външни процеси, трябва да е изключен (books.isbn-filter.enabled=false) - тогава всеки ISBN е "може би".
+@Component
+public class IsbnFilter {
+
+    private final BookRepository bookRepository;
+    private final TransactionTemplate rebuildTransaction;
+    private final long expectedInsertions;
+    private final double falsePositiveRate;
+    private final boolean enabled;
+
+    private volatile StringBloomFilter filter; // null, докато не е изграден - тогава всеки ISBN е "може би"
+    private Set<String> addedDuringRebuild = ConcurrentHashMap.newKeySet(); // Пази се под this
+
+    public IsbnFilter(BookRepository bookRepository,
+                      PlatformTransactionManager transactionManager,
+                      @Value("${books.isbn-filter.expected-insertions:2000000}") long expectedInsertions,
+                      @Value("${books.isbn-filter.false-positive-rate:0.01}") double falsePositiveRate,
+                      @Value("${books.isbn-filter.enabled:true}") boolean enabled) {
+        this.bookRepository = bookRepository;
+        // Не е readOnly - при включени реплики филтърът се изгражда от основната база: ISBN, който изостаналата
+        // реплика още няма, би връщал "няма го" до следващото изграждане
+        this.rebuildTransaction = new TransactionTemplate(transactionManager);
+        this.expectedInsertions = expectedInsertions;
+        this.falsePositiveRate = falsePositiveRate;
+        this.enabled = enabled;
+    }
+
+    // Изграждане на нов филтър от базата; записите, добавени междувременно, се прехвърлят преди подмяната
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        if (!enabled) {
+            return;
+        }
+        synchronized (this) {
+            if (addedDuringRebuild == null) {
+                addedDuringRebuild = ConcurrentHashMap.newKeySet();
+            }
+        }
+
+        StringBloomFilter fresh = new StringBloomFilter(expectedInsertions, falsePositiveRate);
+        rebuildTransaction.executeWithoutResult(status -> {
+            try (Stream<String> isbns = bookRepository.streamAllIsbns()) {
+                isbns.forEach(isbn -> fresh.put(normalize(isbn)));
+            }
+        });
+
+        synchronized (this) {
+            addedDuringRebuild.forEach(fresh::put); // Вече нормализирани от add()
+            addedDuringRebuild = null;
+            filter = fresh;
+        }
+    }
+
+    // false означава, че такъв ISBN със сигурност няма; true - че трябва да се провери в базата
+    public boolean mightContain(String isbn) {
+        if (isbn == null) {
+            return false;
+        }
+        StringBloomFilter current = filter;
+        return !enabled || current == null || current.mightContain(normalize(isbn));
+    }
+
+    public synchronized void add(String isbn) {
+        if (!enabled || isbn == null) {
+            return;
+        }
+        String normalized = normalize(isbn);
+        if (filter != null) {
+            filter.put(normalized);
+        }
+        if (addedDuringRebuild != null) {
+            addedDuringRebuild.add(normalized);
+        }
+    }
+
+    // Колоната isbn е с колация, нечувствителна към регистъра - "...x" и "...X" (контролна цифра на ISBN-10)
+    // са един и същ ISBN за ux_books_isbn и findByIsbn, затова и във филтъра трябва да са една стойност
+    static String normalize(String isbn) {
+        return isbn.trim().toUpperCase(Locale.ROOT);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBookChanged(BookChangedEvent event) {
+        if (event.getBook() != null) {
+            add(event.getBook().getIsbn());
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package bg.home.books.service.impl;
+
+import org.springframework.dao.QueryTimeoutException;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+// Обединява едновременните извиквания с един и същ ключ: само първото изпълнява loader-а,
+// останалите изчакват и получават неговия резултат (или неговата грешка).
+// Чакането е ограничено - ако зареждането не приключи за maxWait, чакащият получава QueryTimeoutException.
+final class SingleFlight<K, V> {
+
+    private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final Duration maxWait;
+
+    // Броячи за метриките: реални зареждания, обединени извиквания и изтекли чакания
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder collapsed = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+
+    SingleFlight(Duration maxWait) {
+        this.maxWait = maxWait;
+    }
+
+    V execute(K key, Supplier<V> loader) {
+        CompletableFuture<V> own = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, own);
+        if (existing != null) {
+            collapsed.increment();
+            return await(key, existing);
+        }
+
+        loads.increment();
+        try {
+            V value = loader.get();
+            own.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            own.completeExceptionally(e); // Всички чакащи получават същата грешка
+            throw e;
+        } finally {
+            inFlight.remove(key, own); // Следващото извикване след края чете наново
+        }
+    }
+
+    int inFlightCount() {
+        return inFlight.size();
+    }
+
+    long loadCount() {
+        return loads.sum();
+    }
+
+    long collapsedCount() {
+        return collapsed.sum();
+    }
+
+    long timeoutCount() {
+        return timeouts.sum();
+    }
+
+    private V await(K key, CompletableFuture<V> future) {
+        try {
+            return future.get(maxWait.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            timeouts.increment();
+            throw new QueryTimeoutException("Timed out after " + maxWait.toMillis() + " ms waiting for the load of " + key, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new QueryTimeoutException("Interrupted while waiting for the load of " + key, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+}
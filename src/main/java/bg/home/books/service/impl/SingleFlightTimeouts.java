@@ -0,0 +1,37 @@
+package bg.home.books.service.impl;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+// Колко най-много чака обединеното извикване за чуждо зареждане - отделно за всяка операция.
+// Целият каталог се чете много по-дълго от една книга: с кратко чакане обединените извиквания
+// биха получили грешка, докато зареждането, което чакат, още върви успешно.
+@Component
+public class SingleFlightTimeouts {
+
+    private final Duration catalogMaxWait;
+    private final Duration bookMaxWait;
+    private final Duration batchMaxWait;
+
+    public SingleFlightTimeouts(@Value("${books.single-flight.catalog-max-wait:60s}") Duration catalogMaxWait,
+                                @Value("${books.single-flight.book-max-wait:5s}") Duration bookMaxWait,
+                                @Value("${books.single-flight.batch-max-wait:5s}") Duration batchMaxWait) {
+        this.catalogMaxWait = catalogMaxWait;
+        this.bookMaxWait = bookMaxWait;
+        this.batchMaxWait = batchMaxWait;
+    }
+
+    public Duration getCatalogMaxWait() {
+        return catalogMaxWait;
+    }
+
+    public Duration getBookMaxWait() {
+        return bookMaxWait;
+    }
+
+    public Duration getBatchMaxWait() {
+        return batchMaxWait;
+    }
+}
@@ -0,0 +1,37 @@
+package bg.home.books.web;
+
+import bg.home.books.model.entity.dto.AuthorPageDTO;
+import bg.home.books.model.entity.dto.BookPageDTO;
+import bg.home.books.service.AuthorService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+// Авторите и техните книги - само за четене, страницирани по ID
+@CrossOrigin(origins = "*")
+@RestController
+@RequestMapping("api/authors")
+public class AuthorsRestController {
+
+    private final AuthorService authorService;
+
+    public AuthorsRestController(AuthorService authorService) {
+        this.authorService = authorService;
+    }
+
+    // Страница автори с броя на книгите им (?after=<id>&limit=N)
+    @GetMapping
+    public ResponseEntity<AuthorPageDTO> getAuthorsPage(@RequestParam(name = "after", required = false) Long after,
+                                                        @RequestParam(name = "limit", defaultValue = "50") int limit) {
+        return ResponseEntity.ok(authorService.getAuthorsPage(after, limit));
+    }
+
+    // Страница книги на един автор (?after=<id на книга>&limit=N); 404, ако авторът не съществува
+    @GetMapping("/{id}/books")
+    public ResponseEntity<BookPageDTO> getAuthorBooks(@PathVariable("id") Long id,
+                                                      @RequestParam(name = "after", required = false) Long after,
+                                                      @RequestParam(name = "limit", defaultValue = "50") int limit) {
+        return authorService.getAuthorBooksPage(id, after, limit)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+}
@@ -0,0 +1,116 @@
+package bg.home.books.web;
+
+import bg.home.books.model.entity.dto.AuthorDTO;
+import bg.home.books.model.entity.dto.BookDTO;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+// Чете книги от CSV със заглавен ред, съдържащ колоните title, author и isbn (в произволен ред)
+final class BookCsvReader {
+
+    private static final char BOM = '\uFEFF';
+
+    private BookCsvReader() {
+    }
+
+    static List<BookDTO> read(Reader reader) throws IOException {
+        CsvTokenizer tokenizer = new CsvTokenizer(reader);
+
+        List<String> header = tokenizer.nextRecord();
+        if (header == null) {
+            return List.of();
+        }
+
+        int titleColumn = columnIndex(header, "title");
+        int authorColumn = columnIndex(header, "author");
+        int isbnColumn = columnIndex(header, "isbn");
+
+        List<BookDTO> books = new ArrayList<>();
+        List<String> record;
+        while ((record = tokenizer.nextRecord()) != null) {
+            if (record.size() == 1 && record.get(0).isBlank()) {
+                continue; // Пропускаме празните редове
+            }
+            // Липсващите колони остават null и редът се отчита като грешка при импорта
+            books.add(new BookDTO()
+                    .setTitle(column(record, titleColumn))
+                    .setAuthor(new AuthorDTO().setName(column(record, authorColumn)))
+                    .setIsbn(column(record, isbnColumn)));
+        }
+        return books;
+    }
+
+    private static int columnIndex(List<String> header, String name) {
+        for (int i = 0; i < header.size(); i++) {
+            String column = header.get(i).trim().toLowerCase(Locale.ROOT);
+            if (i == 0 && !column.isEmpty() && column.charAt(0) == BOM) {
+                column = column.substring(1);
+            }
+            if (column.equals(name)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("CSV header must contain a '" + name + "' column");
+    }
+
+    private static String column(List<String> record, int index) {
+        return index < record.size() ? record.get(index).trim() : null;
+    }
+
+    // Разделя входа на записи по RFC 4180: полета в кавички могат да съдържат запетаи, кавички ("") и нови редове
+    private static final class CsvTokenizer {
+
+        private final Reader reader;
+        private int next;
+
+        CsvTokenizer(Reader reader) throws IOException {
+            this.reader = reader;
+            this.next = reader.read();
+        }
+
+        List<String> nextRecord() throws IOException {
+            if (next == -1) {
+                return null;
+            }
+
+            List<String> fields = new ArrayList<>();
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+
+            while (next != -1) {
+                char c = (char) next;
+                next = reader.read();
+
+                if (quoted) {
+                    if (c == '"' && next == '"') {
+                        field.append('"');
+                        next = reader.read();
+                    } else if (c == '"') {
+                        quoted = false;
+                    } else {
+                        field.append(c);
+                    }
+                } else if (c == '"') {
+                    quoted = true;
+                } else if (c == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                } else if (c == '\r' || c == '\n') {
+                    if (c == '\r' && next == '\n') {
+                        next = reader.read();
+                    }
+                    break;
+                } else {
+                    field.append(c);
+                }
+            }
+
+            fields.add(field.toString());
+            return fields;
+        }
+    }
+}
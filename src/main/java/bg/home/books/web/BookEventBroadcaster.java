@@ -0,0 +1,322 @@
+package bg.home.books.web;
+
+import bg.home.books.service.event.BookChangedEvent;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Разпраща промените по книгите към абонатите на /api/books/events (Server-Sent Events).
+// Свободният абонат не държи нишка - само SseEmitter и малка опашка. Всяко събитие се сглобява веднъж,
+// а изпращането минава през пул нишки, като всеки абонат се обслужва от най-много една нишка наведнъж.
+// Бавен клиент, чиято опашка се препълни, губи натрупаното и получава "resync" - презарежда таблицата.
+// Клиент, при който едно изпращане блокира по-дълго от send-timeout (пълен TCP прозорец), се изключва;
+// нишката му се освобождава, когато Tomcat прекъсне записа, а пулът междувременно пуска нови нишки за останалите.
+// ID-тата на събитията са "<стартиране>-<номер>"; последните N събития се пазят за продължаване с Last-Event-ID.
+@Component
+public class BookEventBroadcaster {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BookEventBroadcaster.class);
+
+    static final String RESYNC_EVENT = "resync";
+    private static final long RECONNECT_DELAY_MS = 3000;
+
+    private final ObjectMapper objectMapper;
+    private final Duration timeout;
+    private final long sendTimeoutNanos;
+    private final int queueCapacity;
+    private final int replayCapacity;
+
+    // Различава ID-тата от предишно стартиране - тогава номерата започват отначало и продължаване не е възможно
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+
+    private final Object lock = new Object(); // Пази номерирането, буфера за продължаване и абонирането
+    private final Deque<Sent> replay = new ArrayDeque<>();
+    private long sequence;
+
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final ExecutorService sender;
+    private final ScheduledExecutorService heartbeats;
+
+    public BookEventBroadcaster(ObjectMapper objectMapper,
+                                @Value("${books.events.timeout:30m}") Duration timeout,
+                                @Value("${books.events.heartbeat:15s}") Duration heartbeat,
+                                @Value("${books.events.queue-capacity:256}") int queueCapacity,
+                                @Value("${books.events.replay-capacity:1000}") int replayCapacity,
+                                @Value("${books.events.send-threads:4}") int sendThreads,
+                                @Value("${books.events.max-send-threads:64}") int maxSendThreads,
+                                @Value("${books.events.send-timeout:10s}") Duration sendTimeout) {
+        this.objectMapper = objectMapper;
+        this.timeout = timeout;
+        this.sendTimeoutNanos = sendTimeout.toNanos();
+        this.queueCapacity = queueCapacity;
+        this.replayCapacity = replayCapacity;
+        // Без опашка пред нишките: блокирало изпращане не задържа останалите - за тях се пуска нова нишка до максимума
+        this.sender = new ThreadPoolExecutor(sendThreads, Math.max(sendThreads, maxSendThreads), 30, TimeUnit.SECONDS,
+                new SynchronousQueue<>(), daemonThreads("book-events-"));
+        this.heartbeats = Executors.newSingleThreadScheduledExecutor(daemonThreads("book-events-heartbeat-"));
+        long period = heartbeat.toMillis();
+        this.heartbeats.scheduleAtFixedRate(this::sendHeartbeats, period, period, TimeUnit.MILLISECONDS);
+        long stallCheck = Math.max(1, sendTimeout.toMillis() / 2);
+        this.heartbeats.scheduleWithFixedDelay(this::dropStalled, stallCheck, stallCheck, TimeUnit.MILLISECONDS);
+    }
+
+    // Нов абонат; lastEventId е заглавката Last-Event-ID при повторно свързване (или null)
+    public SseEmitter subscribe(String lastEventId) {
+        SseEmitter emitter = new SseEmitter(timeout.toMillis());
+        Subscriber subscriber = new Subscriber(emitter);
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(() -> subscribers.remove(subscriber));
+        emitter.onError(error -> subscribers.remove(subscriber));
+
+        subscriber.enqueue(SseEmitter.event().reconnectTime(RECONNECT_DELAY_MS).comment("connected").build());
+        synchronized (lock) { // Пропуснатите събития и регистрацията - атомарно спрямо publish
+            List<Sent> missed = missedSince(lastEventId);
+            if (missed == null) {
+                subscriber.resync(currentId());
+            } else {
+                missed.forEach(sent -> subscriber.enqueue(sent.event()));
+            }
+            subscribers.add(subscriber);
+        }
+        dispatch(subscriber);
+        return emitter;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBookChanged(BookChangedEvent event) {
+        String data;
+        try {
+            data = objectMapper.writeValueAsString(event); // Веднъж за всички абонати
+        } catch (JsonProcessingException e) {
+            LOGGER.warn("Could not serialize {}", event, e);
+            return;
+        }
+
+        synchronized (lock) {
+            String id = epoch + "-" + (++sequence);
+            // Сглобено веднъж - едни и същи части се изпращат на всички абонати
+            Sent sent = new Sent(sequence, SseEmitter.event()
+                    .id(id)
+                    .name(event.getType().name().toLowerCase())
+                    .data(data, MediaType.APPLICATION_JSON)
+                    .build());
+            replay.addLast(sent);
+            if (replay.size() > replayCapacity) {
+                replay.removeFirst();
+            }
+            for (Subscriber subscriber : subscribers) {
+                if (!subscriber.enqueue(sent.event())) {
+                    subscriber.resync(id);
+                }
+            }
+        }
+        subscribers.forEach(this::dispatch);
+    }
+
+    public int subscriberCount() {
+        return subscribers.size();
+    }
+
+    @PreDestroy
+    public void close() {
+        heartbeats.shutdownNow();
+        sender.shutdownNow();
+        subscribers.forEach(subscriber -> subscriber.emitter.complete());
+        subscribers.clear();
+    }
+
+    // Събитията след lastEventId; празен списък за нов абонат, null ако вече не са в буфера (трябва resync)
+    List<Sent> missedSince(String lastEventId) {
+        if (lastEventId == null || lastEventId.isBlank()) {
+            return List.of();
+        }
+        int dash = lastEventId.lastIndexOf('-');
+        if (dash < 0 || !epoch.equals(lastEventId.substring(0, dash))) {
+            return null; // ID от предишно стартиране
+        }
+        long lastSeen;
+        try {
+            lastSeen = Long.parseLong(lastEventId.substring(dash + 1));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        if (lastSeen > sequence) {
+            return null;
+        }
+        if (lastSeen < sequence && (replay.isEmpty() || replay.peekFirst().sequence() > lastSeen + 1)) {
+            return null; // Част от пропуснатото вече е изхвърлено от буфера
+        }
+        List<Sent> missed = new ArrayList<>();
+        for (Sent sent : replay) {
+            if (sent.sequence() > lastSeen) {
+                missed.add(sent);
+            }
+        }
+        if (missed.size() >= queueCapacity) { // Едно място в опашката е заето от началния коментар
+            return null;
+        }
+        return missed;
+    }
+
+    String currentId() {
+        return epoch + "-" + sequence;
+    }
+
+    private void sendHeartbeats() {
+        for (Subscriber subscriber : subscribers) {
+            // При пълна опашка не добавяме - клиентът така или иначе ще получи данни или resync
+            if (subscriber.enqueue(SseEmitter.event().comment("heartbeat").build())) {
+                dispatch(subscriber);
+            }
+        }
+    }
+
+    // Изключва абонатите, чието текущо изпращане блокира по-дълго от send-timeout.
+    // Самия emitter не пипаме: методите му са synchronized и блокиралата нишка държи монитора му.
+    private void dropStalled() {
+        long now = System.nanoTime();
+        for (Subscriber subscriber : subscribers) {
+            long since = subscriber.sendingSince;
+            if (since != 0 && now - since > sendTimeoutNanos) {
+                subscribers.remove(subscriber);
+                subscriber.stalled = true; // Нишката ще затвори връзката, когато записът ѝ приключи
+                LOGGER.debug("Dropping an event stream subscriber blocked on send for over {} ms",
+                        TimeUnit.NANOSECONDS.toMillis(sendTimeoutNanos));
+            }
+        }
+    }
+
+    // Пуска изпращането за абоната, ако в момента никоя нишка не го обслужва
+    private void dispatch(Subscriber subscriber) {
+        if (subscriber.draining.compareAndSet(false, true)) {
+            try {
+                sender.execute(() -> drain(subscriber));
+            } catch (RejectedExecutionException e) {
+                // Всички нишки са заети или пулът е спрян - опитваме пак при следващото събитие или heartbeat
+                subscriber.draining.set(false);
+            }
+        }
+    }
+
+    private void drain(Subscriber subscriber) {
+        try {
+            Set<ResponseBodyEmitter.DataWithMediaType> next;
+            while (!subscriber.stalled && (next = subscriber.poll()) != null) {
+                subscriber.sendingSince = System.nanoTime();
+                try {
+                    subscriber.emitter.send(next);
+                } finally {
+                    subscriber.sendingSince = 0;
+                }
+            }
+            if (subscriber.stalled) {
+                subscriber.emitter.completeWithError(new IOException("Event stream client is not reading"));
+                return;
+            }
+        } catch (IOException | IllegalStateException e) { // Клиентът е затворил връзката
+            subscribers.remove(subscriber);
+            subscriber.emitter.completeWithError(e);
+            return;
+        } finally {
+            subscriber.draining.set(false);
+        }
+        if (subscriber.hasPending()) { // Нещо е добавено между последния poll и освобождаването
+            dispatch(subscriber);
+        }
+    }
+
+    private static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    record Sent(long sequence, Set<ResponseBodyEmitter.DataWithMediaType> event) {
+    }
+
+    // Един абонат: ограничена опашка и флаг дали някоя нишка вече я изпраща
+    private final class Subscriber {
+
+        private final SseEmitter emitter;
+        private final Queue<Set<ResponseBodyEmitter.DataWithMediaType>> queue = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger size = new AtomicInteger();
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private volatile String resyncId; // Ако не е null, следващото изпращане е resync вместо опашката
+        private volatile long sendingSince; // System.nanoTime() в началото на текущото изпращане; 0, ако не изпраща
+        private volatile boolean stalled; // Изключен заради блокирало изпращане
+
+        private Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        private boolean enqueue(Set<ResponseBodyEmitter.DataWithMediaType> event) {
+            if (resyncId != null) {
+                return true; // Така или иначе ще презареди - не трупаме нищо
+            }
+            if (size.incrementAndGet() > queueCapacity) {
+                size.decrementAndGet();
+                return false;
+            }
+            queue.add(event);
+            return true;
+        }
+
+        // Изхвърля натрупаното; клиентът ще получи resync с ID на последното събитие
+        private void resync(String id) {
+            resyncId = id;
+            Set<ResponseBodyEmitter.DataWithMediaType> dropped;
+            while ((dropped = queue.poll()) != null) {
+                size.decrementAndGet();
+            }
+        }
+
+        private Set<ResponseBodyEmitter.DataWithMediaType> poll() {
+            String id = resyncId;
+            if (id != null) {
+                resyncId = null;
+                return SseEmitter.event().id(id).name(RESYNC_EVENT).data("{}", MediaType.APPLICATION_JSON).build();
+            }
+            Set<ResponseBodyEmitter.DataWithMediaType> event = queue.poll();
+            if (event != null) {
+                size.decrementAndGet();
+            }
+            return event;
+        }
+
+        private boolean hasPending() {
+            return resyncId != null || !queue.isEmpty();
+        }
+    }
+}
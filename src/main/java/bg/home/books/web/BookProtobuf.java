@@ -0,0 +1,102 @@
+package bg.home.books.web;
+
+import bg.home.books.model.entity.dto.BookDTO;
+import bg.home.books.model.entity.dto.BookPageDTO;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.WireFormat;
+
+import java.io.IOException;
+import java.util.Collection;
+
+// Кодиране на книгите във формата на protobuf по схемата в static/proto/books.proto.
+// Пишем полетата директно с CodedOutputStream, без генерирани класове и без копиране в Message обекти.
+final class BookProtobuf {
+
+    // message Book { int64 id = 1; string title = 2; string isbn = 3; string author = 4; int64 version = 5; }
+    private static final int BOOK_ID = 1;
+    private static final int BOOK_TITLE = 2;
+    private static final int BOOK_ISBN = 3;
+    private static final int BOOK_AUTHOR = 4;
+    private static final int BOOK_VERSION = 5;
+
+    // message BookList { repeated Book books = 1; }
+    // message BookPage { repeated Book books = 1; int64 next_cursor = 2; string next_token = 3; }
+    private static final int LIST_BOOKS = 1;
+    private static final int PAGE_NEXT_CURSOR = 2;
+    private static final int PAGE_NEXT_TOKEN = 3;
+
+    private BookProtobuf() {
+    }
+
+    static void writeBook(CodedOutputStream out, BookDTO book) throws IOException {
+        if (book.getId() != null) {
+            out.writeInt64(BOOK_ID, book.getId());
+        }
+        if (book.getTitle() != null) {
+            out.writeString(BOOK_TITLE, book.getTitle());
+        }
+        if (book.getIsbn() != null) {
+            out.writeString(BOOK_ISBN, book.getIsbn());
+        }
+        String author = authorName(book);
+        if (author != null) {
+            out.writeString(BOOK_AUTHOR, author);
+        }
+        if (book.getVersion() != null) {
+            out.writeInt64(BOOK_VERSION, book.getVersion());
+        }
+    }
+
+    static void writeBookList(CodedOutputStream out, Collection<BookDTO> books) throws IOException {
+        for (BookDTO book : books) {
+            writeNestedBook(out, book);
+        }
+    }
+
+    static void writeBookPage(CodedOutputStream out, BookPageDTO page) throws IOException {
+        writeBookList(out, page.getBooks());
+        if (page.getNextCursor() != null) {
+            out.writeInt64(PAGE_NEXT_CURSOR, page.getNextCursor());
+        }
+        if (page.getNextToken() != null) {
+            out.writeString(PAGE_NEXT_TOKEN, page.getNextToken());
+        }
+    }
+
+    // Книга с префикс дължината ѝ (varint) - потокът от експорта е поредица от такива съобщения,
+    // както ги чете parseDelimitedFrom в protobuf библиотеките
+    static void writeDelimitedBook(CodedOutputStream out, BookDTO book) throws IOException {
+        out.writeUInt32NoTag(bookSize(book));
+        writeBook(out, book);
+    }
+
+    private static void writeNestedBook(CodedOutputStream out, BookDTO book) throws IOException {
+        out.writeTag(LIST_BOOKS, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+        writeDelimitedBook(out, book);
+    }
+
+    static int bookSize(BookDTO book) {
+        int size = 0;
+        if (book.getId() != null) {
+            size += CodedOutputStream.computeInt64Size(BOOK_ID, book.getId());
+        }
+        if (book.getTitle() != null) {
+            size += CodedOutputStream.computeStringSize(BOOK_TITLE, book.getTitle());
+        }
+        if (book.getIsbn() != null) {
+            size += CodedOutputStream.computeStringSize(BOOK_ISBN, book.getIsbn());
+        }
+        String author = authorName(book);
+        if (author != null) {
+            size += CodedOutputStream.computeStringSize(BOOK_AUTHOR, author);
+        }
+        if (book.getVersion() != null) {
+            size += CodedOutputStream.computeInt64Size(BOOK_VERSION, book.getVersion());
+        }
+        return size;
+    }
+
+    private static String authorName(BookDTO book) {
+        return book.getAuthor() == null ? null : book.getAuthor().getName();
+    }
+}
@@ -0,0 +1,82 @@
+package bg.home.books.web;
+
+import bg.home.books.model.entity.dto.BookDTO;
+import bg.home.books.model.entity.dto.BookPageDTO;
+import com.google.protobuf.CodedOutputStream;
+import org.springframework.core.ResolvableType;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractGenericHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.Collection;
+
+// Отговори във формат application/x-protobuf за книга, списък с книги и страница с книги (само запис)
+public class BookProtobufHttpMessageConverter extends AbstractGenericHttpMessageConverter<Object> {
+
+    public static final MediaType PROTOBUF = new MediaType("application", "x-protobuf");
+    public static final String PROTOBUF_VALUE = "application/x-protobuf";
+
+    public BookProtobufHttpMessageConverter() {
+        super(PROTOBUF);
+    }
+
+    @Override
+    public boolean canRead(Type type, Class<?> contextClass, MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    protected boolean canRead(MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    public boolean canWrite(Type type, Class<?> clazz, MediaType mediaType) {
+        return canWrite(mediaType) && isBookType(type != null ? ResolvableType.forType(type) : ResolvableType.forClass(clazz));
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return BookDTO.class.isAssignableFrom(clazz) || BookPageDTO.class.isAssignableFrom(clazz);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected void writeInternal(Object body, Type type, HttpOutputMessage outputMessage) throws IOException {
+        CodedOutputStream out = CodedOutputStream.newInstance(outputMessage.getBody());
+        if (body instanceof BookDTO book) {
+            BookProtobuf.writeBook(out, book);
+        } else if (body instanceof BookPageDTO page) {
+            BookProtobuf.writeBookPage(out, page);
+        } else {
+            BookProtobuf.writeBookList(out, (Collection<BookDTO>) body);
+        }
+        out.flush();
+    }
+
+    @Override
+    public Object read(Type type, Class<?> contextClass, HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException("Protobuf request bodies are not supported", inputMessage);
+    }
+
+    @Override
+    protected Object readInternal(Class<?> clazz, HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException("Protobuf request bodies are not supported", inputMessage);
+    }
+
+    private static boolean isBookType(ResolvableType type) {
+        Class<?> raw = type.resolve(Object.class);
+        if (BookDTO.class.isAssignableFrom(raw) || BookPageDTO.class.isAssignableFrom(raw)) {
+            return true;
+        }
+        if (!Collection.class.isAssignableFrom(raw)) {
+            return false;
+        }
+        Class<?> element = type.asCollection().resolveGeneric(0); // Само списъци от книги
+        return element != null && BookDTO.class.isAssignableFrom(element);
+    }
+}
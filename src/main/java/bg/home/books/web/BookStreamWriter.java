@@ -0,0 +1,79 @@
+package bg.home.books.web;
+
+import bg.home.books.model.entity.dto.BookDTO;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.google.protobuf.CodedOutputStream;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+
+// Записва експорта като поток от книги в избрания формат; close() само изпраща остатъка, без да затваря потока
+interface BookStreamWriter extends Closeable {
+
+    void write(BookDTO book) throws IOException;
+
+    void flush() throws IOException;
+
+    @Override
+    default void close() throws IOException {
+        flush();
+    }
+
+    // NDJSON - по един JSON обект на ред
+    static BookStreamWriter ndjson(ObjectWriter jsonWriter, OutputStream outputStream) {
+        return new BookStreamWriter() {
+            @Override
+            public void write(BookDTO book) throws IOException {
+                outputStream.write(jsonWriter.writeValueAsBytes(book));
+                outputStream.write('\n');
+            }
+
+            @Override
+            public void flush() throws IOException {
+                outputStream.flush();
+            }
+        };
+    }
+
+    // CBOR/Smile - последователност от самостоятелни стойности през един генератор
+    static BookStreamWriter jackson(ObjectWriter binaryWriter, OutputStream outputStream) throws IOException {
+        SequenceWriter sequence = binaryWriter.without(JsonGenerator.Feature.AUTO_CLOSE_TARGET).writeValues(outputStream);
+        return new BookStreamWriter() {
+            @Override
+            public void write(BookDTO book) throws IOException {
+                sequence.write(book);
+            }
+
+            @Override
+            public void flush() throws IOException {
+                sequence.flush();
+            }
+
+            @Override
+            public void close() throws IOException {
+                sequence.close();
+                outputStream.flush();
+            }
+        };
+    }
+
+    // Protobuf - книги с префикс дължината (delimited)
+    static BookStreamWriter protobuf(OutputStream outputStream) {
+        CodedOutputStream out = CodedOutputStream.newInstance(outputStream);
+        return new BookStreamWriter() {
+            @Override
+            public void write(BookDTO book) throws IOException {
+                BookProtobuf.writeDelimitedBook(out, book);
+            }
+
+            @Override
+            public void flush() throws IOException {
+                out.flush();
+                outputStream.flush();
+            }
+        };
+    }
+}
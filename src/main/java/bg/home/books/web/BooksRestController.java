@@ -1,11 +1,41 @@
 package bg.home.books.web;
 
+import bg.home.books.config.ReplicaLag;
+import bg.home.books.model.entity.dto.BookBatchDTO;
+import bg.home.books.model.entity.dto.BookChangesDTO;
 import bg.home.books.model.entity.dto.BookDTO;
+import bg.home.books.model.entity.dto.BookDeleteResultDTO;
+import bg.home.books.model.entity.dto.BookImportResultDTO;
+import bg.home.books.model.entity.dto.BookPageDTO;
+import bg.home.books.model.entity.dto.BookSearchPageDTO;
+import bg.home.books.model.entity.dto.CacheStatsDTO;
 import bg.home.books.service.BookService;
+import bg.home.books.service.exception.BookVersionConflictException;
+import bg.home.books.service.exception.DuplicateIsbnException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.util.MimeTypeUtils;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.http.HttpStatus;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
@@ -17,26 +47,175 @@ import java.util.Optional;
 @RequestMapping("api/books")
 public class BooksRestController {
 
+    // През колко реда изпращаме натрупаното към клиента при експорт
+    private static final int EXPORT_FLUSH_EVERY = 500;
+
+    // Бинарният формат на Jackson, който Spring договаря при наличие на jackson-dataformat-smile
+    static final String SMILE_VALUE = "application/x-jackson-smile";
+    static final MediaType SMILE = MediaType.parseMediaType(SMILE_VALUE);
+
+    private static final List<MediaType> BINARY_FORMATS =
+            List.of(MediaType.APPLICATION_CBOR, SMILE, BookProtobufHttpMessageConverter.PROTOBUF);
+
+    // Максимален брой ID-та в една заявка за няколко книги
+    static final int MAX_BATCH_IDS = 1000;
+
     private final BookService bookService;
+    private final BookEventBroadcaster bookEvents;
+    private final ReplicaLag replicaLag;
+    private final ObjectWriter bookWriter;
+    private final ObjectWriter cborBookWriter;
+    private final ObjectWriter smileBookWriter;
 
     // Конструктор с инжектиране на BookService, който обработва логиката за книги
-    public BooksRestController(BookService bookService) {
+    public BooksRestController(BookService bookService, BookEventBroadcaster bookEvents, ReplicaLag replicaLag,
+                               ObjectMapper objectMapper) {
         this.bookService = bookService;
+        this.bookEvents = bookEvents;
+        this.replicaLag = replicaLag;
+        this.bookWriter = objectMapper.writerFor(BookDTO.class);
+        // Същите настройки на Jackson, но с бинарен формат
+        this.cborBookWriter = objectMapper.copyWith(new CBORFactory()).writerFor(BookDTO.class);
+        this.smileBookWriter = objectMapper.copyWith(new SmileFactory()).writerFor(BookDTO.class);
     }
 
-    // Зареждане на всички книги
+    // Зареждане на една страница книги (?after=<id>&limit=N)
     @GetMapping
-    public ResponseEntity<List<BookDTO>> getAllBooks() {
-        return ResponseEntity.ok(bookService.getAllBooks()); // Връщаме списък с всички книги със статус 200 OK
+    public ResponseEntity<BookPageDTO> getBooksPage(@RequestParam(name = "after", required = false) Long after,
+                                                    @RequestParam(name = "limit", defaultValue = "50") int limit,
+                                                    @RequestHeader(name = HttpHeaders.ACCEPT, required = false) String accept,
+                                                    WebRequest request) {
+        // ETag се взима преди данните - ако каталогът не е променян, връщаме 304 без заявка към базата
+        MediaType format = responseFormat(accept);
+        String etag = catalogETag(format);
+        if (etag != null && request.checkNotModified(etag)) {
+            return null; // Spring вече е записал 304 Not Modified
+        }
+        return withCatalogETag(ResponseEntity.ok(), etag)
+                .contentType(format)
+                .varyBy(HttpHeaders.ACCEPT)
+                .cacheControl(CacheControl.noCache()) // Клиентът кешира, но винаги проверява с If-None-Match
+                .body(bookService.getBooksPage(after, limit)); // Връщаме страницата и курсора за следващата
+    }
+
+    // Зареждане на всички книги наведнъж - само при изрично поискване (?all=true)
+    @GetMapping(params = "all=true")
+    public ResponseEntity<List<BookDTO>> getAllBooks(
+            @RequestHeader(name = HttpHeaders.ACCEPT, required = false) String accept, WebRequest request) {
+        MediaType format = responseFormat(accept);
+        String etag = catalogETag(format);
+        if (etag != null && request.checkNotModified(etag)) {
+            return null;
+        }
+        return withCatalogETag(ResponseEntity.ok(), etag)
+                .contentType(format)
+                .varyBy(HttpHeaders.ACCEPT)
+                .cacheControl(CacheControl.noCache())
+                .body(bookService.getAllBooks()); // Връщаме списък с всички книги със статус 200 OK
+    }
+
+    // Няколко книги по ID с една заявка (?ids=1,2,3) - в реда на заявката, липсващите са в missingIds
+    @GetMapping(params = "ids")
+    public ResponseEntity<BookBatchDTO> findBooksByIds(@RequestParam("ids") List<Long> ids) {
+        return booksByIds(ids);
+    }
+
+    // Същото за дълги списъци, които не се побират в URL - JSON масив от ID-та в тялото
+    @PostMapping(value = "/lookup", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<BookBatchDTO> lookupBooks(@RequestBody List<Long> ids) {
+        return booksByIds(ids);
+    }
+
+    // Поток от промени (Server-Sent Events): created/updated/deleted с книгата като JSON, resync при изоставане.
+    // Браузърът се свързва отново сам и изпраща Last-Event-ID - пропуснатите събития се изпращат наново.
+    @GetMapping(value = "/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter bookEvents(@RequestHeader(name = "Last-Event-ID", required = false) String lastEventId) {
+        return bookEvents.subscribe(lastEventId);
+    }
+
+    // Експорт на целия каталог, записван докато четем от базата: NDJSON (по един JSON обект на ред) по подразбиране,
+    // или поток от CBOR/Smile стойности, или protobuf съобщения с префикс дължината - според Accept
+    @GetMapping(value = "/export", produces = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.APPLICATION_CBOR_VALUE,
+            SMILE_VALUE, BookProtobufHttpMessageConverter.PROTOBUF_VALUE})
+    public ResponseEntity<StreamingResponseBody> exportBooks(
+            @RequestHeader(name = HttpHeaders.ACCEPT, required = false) String accept) {
+        MediaType format = exportFormat(accept);
+        StreamingResponseBody body = outputStream -> {
+            try (BookStreamWriter writer = bookStreamWriter(format, outputStream)) {
+                int[] written = {0};
+                bookService.exportBooks(book -> {
+                    try {
+                        writer.write(book);
+                        if (++written[0] % EXPORT_FLUSH_EVERY == 1) { // Първият ред тръгва веднага, после на порции
+                            writer.flush();
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e); // Клиентът е прекъснал връзката - спираме обхождането
+                    }
+                });
+            }
+        };
+
+        return ResponseEntity.ok()
+                .contentType(format)
+                .body(body);
+    }
+
+    // Търсене на книга по ISBN
+    @GetMapping("/isbn/{isbn}")
+    public ResponseEntity<BookDTO> findBookByIsbn(@PathVariable("isbn") String isbn) {
+        return bookService.findBookByIsbn(isbn)
+                .map(ResponseEntity::ok) // Ако книгата съществува, връщаме я със статус 200 OK
+                .orElseGet(() -> ResponseEntity.notFound().build()); // Ако не съществува, връщаме 404 Not Found
+    }
+
+    // Търсене на книги по заглавие и автор (?q=<думи>&offset=0&limit=20), подредени по релевантност
+    @GetMapping("/search")
+    public ResponseEntity<BookSearchPageDTO> searchBooks(@RequestParam("q") String query,
+                                                         @RequestParam(name = "offset", defaultValue = "0") int offset,
+                                                         @RequestParam(name = "limit", defaultValue = "20") int limit) {
+        return ResponseEntity.ok(bookService.searchBooks(query, offset, limit));
+    }
+
+    // Статистика на кеша за единични книги (попадения, пропуски, изхвърляния)
+    @GetMapping("/cache/stats")
+    public ResponseEntity<CacheStatsDTO> getBookCacheStats() {
+        return ResponseEntity.ok(bookService.getBookCacheStats());
+    }
+
+    // Промените след даден токен (?since=<nextToken>&limit=N), включително изтритите книги.
+    // Без since започва от началото; отговорът носи nextToken за следващото синхронизиране.
+    @GetMapping("/changes")
+    public ResponseEntity<BookChangesDTO> getChanges(@RequestParam(name = "since", required = false) String since,
+                                                     @RequestParam(name = "limit", defaultValue = "100") int limit) {
+        try {
+            return ResponseEntity.ok(bookService.getChanges(since, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build(); // Невалиден токен
+        }
     }
 
     // Търсене на книга по ID
     @GetMapping("/{id}")
-    public ResponseEntity<BookDTO> findBookById(@PathVariable("id") Long id) {
+    public ResponseEntity<BookDTO> findBookById(@PathVariable("id") Long id,
+                                                @RequestHeader(name = HttpHeaders.ACCEPT, required = false) String accept,
+                                                WebRequest request) {
+        // Първо сравняваме само версията на реда - при съвпадение връщаме 304, без да зареждаме книгата
+        MediaType format = responseFormat(accept);
+        Optional<Long> version = bookService.findBookVersion(id);
+        if (version.isPresent() && request.checkNotModified(bookETag(id, version.get(), format))) {
+            return null; // Spring вече е записал 304 Not Modified
+        }
+
         Optional<BookDTO> bookDTOOptional = bookService.findBookById(id);
 
         return bookDTOOptional
-                .map(ResponseEntity::ok) // Ако книгата съществува, връщаме я със статус 200 OK
+                .map(book -> ResponseEntity.ok() // Ако книгата съществува, връщаме я със статус 200 OK
+                        .contentType(format)
+                        .varyBy(HttpHeaders.ACCEPT)
+                        .cacheControl(CacheControl.noCache())
+                        .eTag(bookETag(id, book.getVersion(), format))
+                        .body(book))
                 .orElse(ResponseEntity.notFound().build()); // Ако не съществува, връщаме 404 Not Found
         //orElse изчислява стойността веднага, независимо дали е необходима.
     }
@@ -48,21 +227,221 @@ public class BooksRestController {
         return ResponseEntity.noContent().build(); // Връщаме 204 No Content след успешното изтриване
     }
 
-    // Обновяване на книга по ID
+    // Масово изтриване по списък с ID-та (?ids=1,2,3 или JSON масив в тялото) или на всички книги на автор (?author=...)
+    @DeleteMapping
+    public ResponseEntity<BookDeleteResultDTO> deleteBooks(@RequestParam(name = "ids", required = false) List<Long> ids,
+                                                           @RequestParam(name = "author", required = false) String author,
+                                                           @RequestBody(required = false) List<Long> bodyIds) {
+        List<Long> allIds = new ArrayList<>();
+        if (ids != null) {
+            allIds.addAll(ids);
+        }
+        if (bodyIds != null) {
+            allIds.addAll(bodyIds);
+        }
+        if ((allIds.isEmpty() && author == null) || allIds.contains(null)) {
+            return ResponseEntity.badRequest().build(); // Без филтър не трием целия каталог
+        }
+
+        int deleted = author != null ? bookService.deleteBooksByAuthor(author) : 0;
+        if (!allIds.isEmpty()) {
+            deleted += bookService.deleteBooks(allIds);
+        }
+        return ResponseEntity.ok(new BookDeleteResultDTO().setDeleted(deleted)); // Връщаме броя изтрити книги
+    }
+
+    // Обновяване на книга по ID; очакваната версия идва от полето version или от If-Match (ETag).
+    // Без версия записът е безусловен, но чужд запис между четенето и записа пак дава 409.
     @PutMapping("/{id}")
-    public ResponseEntity<BookDTO> updateBook(@PathVariable Long id, @RequestBody BookDTO bookDTO) {
-        Optional<BookDTO> updatedBook = bookService.updateBook(id, bookDTO);
+    public ResponseEntity<BookDTO> updateBook(@PathVariable Long id,
+                                              @RequestBody BookDTO bookDTO,
+                                              @RequestHeader(name = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        Long expectedVersion = bookDTO.getVersion() != null ? bookDTO.getVersion() : versionFromETag(id, ifMatch);
+        Optional<BookDTO> updatedBook = bookService.updateBook(id, expectedVersion, bookDTO);
 
         return updatedBook
-                .map(ResponseEntity::ok)  // Ако книгата е обновена, връщаме 200 OK с обновените данни
+                .map(book -> ResponseEntity.ok() // Ако книгата е обновена, връщаме 200 OK с обновените данни и новия ETag
+                        .eTag(bookETag(id, book.getVersion()))
+                        .body(book))
                 .orElseGet(() -> ResponseEntity.notFound().build());  // Ако книгата не съществува, връщаме 404 Not Found
         //orElseGet изчислява стойността само ако Optional е празен.
     }
 
+    // Частична промяна - само подадените полета; очакваната версия идва от полето version или от If-Match (ETag)
+    @PatchMapping("/{id}")
+    public ResponseEntity<Void> patchBook(@PathVariable("id") Long id,
+                                          @RequestBody BookDTO changes,
+                                          @RequestHeader(name = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        Long expectedVersion = changes.getVersion() != null ? changes.getVersion() : versionFromETag(id, ifMatch);
+        if (expectedVersion == null) {
+            return ResponseEntity.status(HttpStatus.PRECONDITION_REQUIRED).build(); // 428 - без версия не презаписваме
+        }
+        boolean authorChanged = changes.getAuthor() != null && changes.getAuthor().getName() != null;
+        if (changes.getTitle() == null && changes.getIsbn() == null && !authorChanged) {
+            return ResponseEntity.badRequest().build(); // Няма какво да се промени
+        }
+
+        return bookService.patchBook(id, expectedVersion, changes)
+                .map(version -> ResponseEntity.noContent().eTag(bookETag(id, version)).<Void>build()) // 204 с новия ETag
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
     // Създаване на нова книга
     @PostMapping
     public ResponseEntity<BookDTO> createBook(@RequestBody BookDTO bookDTO) {
         BookDTO createdBook = bookService.createBook(bookDTO);
         return ResponseEntity.status(HttpStatus.CREATED).body(createdBook); // Връщаме 201 Created с новата книга
     }
+
+    // Масов импорт на книги от JSON масив
+    @PostMapping(value = "/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<BookImportResultDTO> importBooks(@RequestBody List<BookDTO> books) {
+        return ResponseEntity.ok(bookService.importBooks(books)); // Връщаме броя записани книги и грешките по редове
+    }
+
+    // Масов импорт на книги от качен CSV файл (колони title, author, isbn)
+    @PostMapping(value = "/batch", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<BookImportResultDTO> importBooksCsv(@RequestParam("file") MultipartFile file) throws IOException {
+        List<BookDTO> books;
+        try (Reader reader = new InputStreamReader(file.getInputStream(), StandardCharsets.UTF_8)) {
+            books = BookCsvReader.read(reader);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build(); // Липсва задължителна колона в заглавния ред
+        }
+        return ResponseEntity.ok(bookService.importBooks(books));
+    }
+
+    // Книга с този ISBN вече съществува - връщаме 409 Conflict
+    @ExceptionHandler(DuplicateIsbnException.class)
+    public ResponseEntity<String> handleDuplicateIsbn(DuplicateIsbnException e) {
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+    }
+
+    private ResponseEntity<BookBatchDTO> booksByIds(List<Long> ids) {
+        if (ids.isEmpty() || ids.size() > MAX_BATCH_IDS || ids.contains(null)) {
+            return ResponseEntity.badRequest().build(); // Празен, твърде дълъг или невалиден списък
+        }
+        return ResponseEntity.ok(bookService.findBooksByIds(ids));
+    }
+
+    // Книгата е променена от друг след версията на клиента - връщаме 409 Conflict и текущия ETag
+    @ExceptionHandler(BookVersionConflictException.class)
+    public ResponseEntity<String> handleVersionConflict(BookVersionConflictException e) {
+        return ResponseEntity.status(HttpStatus.CONFLICT)
+                .eTag(bookETag(e.getId(), e.getCurrentVersion()))
+                .body(e.getMessage());
+    }
+
+    // Обединено зареждане, което не е приключило навреме - базата е претоварена, клиентът да опита пак
+    @ExceptionHandler(QueryTimeoutException.class)
+    public ResponseEntity<Void> handleLoadTimeout(QueryTimeoutException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .build();
+    }
+
+    // Версията от ETag "book-<id>-<version>" (и слабата му форма W/...); null, ако не е за тази книга
+    private static Long versionFromETag(Long id, String etag) {
+        if (etag == null) {
+            return null;
+        }
+        String value = etag.trim();
+        if (value.startsWith("W/")) {
+            value = value.substring(2);
+        }
+        String prefix = "\"book-" + id + "-";
+        if (!value.startsWith(prefix) || !value.endsWith("\"")) {
+            return null;
+        }
+        String versionAndFormat = value.substring(prefix.length(), value.length() - 1);
+        int formatStart = versionAndFormat.indexOf('-'); // ETag на бинарен формат, напр. "book-1-3-cbor"
+        try {
+            return Long.parseLong(formatStart < 0 ? versionAndFormat : versionAndFormat.substring(0, formatStart));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    // Форматът за експорта: NDJSON или бинарен поток
+    private static MediaType exportFormat(String accept) {
+        return preferredFormat(accept, MediaType.APPLICATION_NDJSON);
+    }
+
+    // Форматът на отговорите с ETag: JSON или бинарен. Избира се тук, а не от Spring след метода,
+    // защото ETag-ът зависи от него - иначе CBOR и JSON на една книга биха имали един и същ силен ETag.
+    private static MediaType responseFormat(String accept) {
+        return preferredFormat(accept, MediaType.APPLICATION_JSON);
+    }
+
+    // Най-предпочитаният формат според Accept: по q и после по специфичност, както ги подрежда Spring.
+    // Текстовият формат, поискан изрично или чрез */*, печели пред бинарните формати с по-ниско q;
+    // липсващ Accept дава текстовия.
+    private static MediaType preferredFormat(String accept, MediaType textFormat) {
+        if (accept == null) {
+            return textFormat;
+        }
+        List<MediaType> requested = new ArrayList<>(MediaType.parseMediaTypes(accept));
+        MimeTypeUtils.sortBySpecificity(requested);
+        for (MediaType type : requested) {
+            if (type.getQualityValue() == 0) {
+                continue; // q=0 - клиентът изрично не приема този формат
+            }
+            if (type.isWildcardType() || type.isWildcardSubtype() || type.isCompatibleWith(textFormat)) {
+                return textFormat;
+            }
+            for (MediaType format : BINARY_FORMATS) {
+                if (type.isCompatibleWith(format)) {
+                    return format;
+                }
+            }
+        }
+        return textFormat;
+    }
+
+    private BookStreamWriter bookStreamWriter(MediaType format, OutputStream outputStream) throws IOException {
+        if (format.equals(MediaType.APPLICATION_CBOR)) {
+            return BookStreamWriter.jackson(cborBookWriter, outputStream);
+        }
+        if (format.equals(SMILE)) {
+            return BookStreamWriter.jackson(smileBookWriter, outputStream);
+        }
+        if (format.equals(BookProtobufHttpMessageConverter.PROTOBUF)) {
+            return BookStreamWriter.protobuf(outputStream);
+        }
+        return BookStreamWriter.ndjson(bookWriter, outputStream);
+    }
+
+    // ETag на каталога или null, ако четенето може да отиде към реплика, която още не е стигнала до последната промяна:
+    // стара страница под новия ETag би получавала 304 до следващата промяна. Без ETag няма и 304 - клиентът чете наново.
+    private String catalogETag(MediaType format) {
+        String etag = bookService.getCatalogETag() + formatSuffix(format);
+        return replicaLag.mayBeStale(System.nanoTime()) ? null : etag;
+    }
+
+    private static ResponseEntity.BodyBuilder withCatalogETag(ResponseEntity.BodyBuilder response, String etag) {
+        return etag != null ? response.eTag(etag) : response;
+    }
+
+    // Силен ETag на книга - сменя се с всяка нова версия на реда
+    private static String bookETag(Long id, Long version) {
+        return bookETag(id, version, MediaType.APPLICATION_JSON);
+    }
+
+    private static String bookETag(Long id, Long version, MediaType format) {
+        return "\"book-" + id + "-" + version + formatSuffix(format) + "\"";
+    }
+
+    // Силният ETag обещава същите байтове - всеки бинарен формат има свой; JSON е без суфикс
+    private static String formatSuffix(MediaType format) {
+        if (format.equals(MediaType.APPLICATION_CBOR)) {
+            return "-cbor";
+        }
+        if (format.equals(SMILE)) {
+            return "-smile";
+        }
+        if (format.equals(BookProtobufHttpMessageConverter.PROTOBUF)) {
+            return "-protobuf";
+        }
+        return "";
+    }
 }
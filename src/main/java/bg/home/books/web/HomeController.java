@@ -1,25 +1,89 @@
 package bg.home.books.web;
 
-import bg.home.books.model.entity.dto.BookDTO;
+import bg.home.books.config.ReplicaLag;
+import bg.home.books.model.entity.dto.BookPageDTO;
 import bg.home.books.service.BookService;
+import bg.home.books.service.BookSort;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.thymeleaf.ITemplateEngine;
+import org.thymeleaf.context.Context;
+import org.thymeleaf.context.LazyContextVariable;
 
-import java.util.List;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 
 @Controller
 public class HomeController {
+
+    // Размерът на страницата по подразбиране (колкото зарежда и app.js)
+    private static final int DEFAULT_PAGE_SIZE = 50;
+
     private final BookService bookService;
+    private final HomePageCache homePageCache;
+    private final ITemplateEngine templateEngine;
+    private final ReplicaLag replicaLag;
 
-    public HomeController(BookService bookService) {
+    public HomeController(BookService bookService, HomePageCache homePageCache, ITemplateEngine templateEngine,
+                          ReplicaLag replicaLag) {
         this.bookService = bookService;
+        this.homePageCache = homePageCache;
+        this.templateEngine = templateEngine;
+        this.replicaLag = replicaLag;
     }
 
+    // Една страница от каталога (?sort=id|-id|title&after=<курсор>&size=N), рендерирана на сървъра
     @GetMapping
-    public String home(Model model) {
-        List<BookDTO> books = bookService.getAllBooks();
-        model.addAttribute("books", books);
+    public String home(@RequestParam(name = "sort", defaultValue = "id") String sortParam,
+                       @RequestParam(name = "after", required = false) String after,
+                       @RequestParam(name = "size", defaultValue = "" + DEFAULT_PAGE_SIZE) int size,
+                       Model model,
+                       HttpServletResponse response) {
+        BookSort sort = BookSort.fromParam(sortParam);
+        String catalogVersion = bookService.getCatalogETag();
+        // Ключът е по това, което реално се показва - size=500 и size=99999 са една и съща страница,
+        // а невалиден курсор е първата страница, не нов запис в кеша
+        String cursor = sort.canonicalCursor(after);
+        int pageSize = Math.max(1, Math.min(size, BookService.MAX_PAGE_SIZE));
+        String pageKey = sort.getParam() + "|" + cursor + "|" + pageSize;
+
+        model.addAttribute("sort", sort.getParam());
+        model.addAttribute("size", pageSize);
+        // Страницата се зарежда едва когато шаблонът стигне до таблицата - дотогава началото на HTML-а
+        // вече е изпратено и браузърът започва да го рисува, докато заявката към базата върви
+        model.addAttribute("page", new LazyContextVariable<RenderedBookPage>() {
+            @Override
+            protected RenderedBookPage loadValue() {
+                flush(response);
+                // Страницата може да се чете от реплика - кешира се за всички само ако репликата е сигурно актуална
+                return homePageCache.get(catalogVersion, pageKey, () -> render(sort, cursor, pageSize), replicaLag::mayBeStale);
+            }
+        });
         return "index";
     }
+
+    private RenderedBookPage render(BookSort sort, String after, int size) {
+        BookPageDTO page;
+        try {
+            page = bookService.getBooksPage(sort, after, size);
+        } catch (IllegalArgumentException e) {
+            page = bookService.getBooksPage(sort, null, size); // Невалиден курсор - показваме първата страница
+        }
+
+        Context context = new Context();
+        context.setVariable("books", page.getBooks());
+        String rowsHtml = templateEngine.process("fragments/book-rows", context);
+        return new RenderedBookPage(rowsHtml, page.getNextToken(), page.getNextCursor());
+    }
+
+    private static void flush(HttpServletResponse response) {
+        try {
+            response.flushBuffer();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // Клиентът е затворил връзката
+        }
+    }
 }
@@ -0,0 +1,54 @@
+package bg.home.books.web;
+
+import bg.home.books.service.event.BookChangedEvent;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.function.LongPredicate;
+import java.util.function.Supplier;
+
+// Кеш на готовия HTML на таблицата за всяка страница (подредба, курсор, размер).
+// Ключът съдържа версията на каталога, така че страница, рендерирана преди запис, не се връща след него;
+// при всяка промяна кешът се изчиства и изцяло, за да не държи остарели страници.
+@Component
+public class HomePageCache {
+
+    private final Cache<String, RenderedBookPage> pages;
+
+    // Ограничен по общия размер на HTML-а, а не по броя страници - една страница е от 1 до 500 реда
+    public HomePageCache(@Value("${books.home-page-cache.max-chars:20000000}") long maxChars) {
+        this.pages = Caffeine.newBuilder()
+                .maximumWeight(maxChars)
+                .weigher((String key, RenderedBookPage page) -> page.getRowsHtml().length())
+                .build();
+    }
+
+    public RenderedBookPage get(String catalogVersion, String pageKey, Supplier<RenderedBookPage> renderer) {
+        return get(catalogVersion, pageKey, renderer, readStart -> false);
+    }
+
+    // Страница, за която mayBeStale(началото на рендерирането) е true, се връща, но не се кешира:
+    // може да е прочетена от реплика, която още не е стигнала до catalogVersion
+    public RenderedBookPage get(String catalogVersion, String pageKey, Supplier<RenderedBookPage> renderer,
+                                LongPredicate mayBeStale) {
+        RenderedBookPage[] rendered = new RenderedBookPage[1];
+        RenderedBookPage cached = pages.get(catalogVersion + "|" + pageKey, key -> {
+            long readStart = System.nanoTime();
+            rendered[0] = renderer.get();
+            return mayBeStale.test(readStart) ? null : rendered[0]; // null не се записва в кеша
+        });
+        return cached != null ? cached : rendered[0];
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBookChanged(BookChangedEvent event) {
+        pages.invalidateAll();
+    }
+
+    public long size() {
+        return pages.estimatedSize();
+    }
+}
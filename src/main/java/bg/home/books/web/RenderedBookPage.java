@@ -0,0 +1,27 @@
+package bg.home.books.web;
+
+// Готовият HTML на редовете от една страница на таблицата заедно с курсорите за следващата страница
+public class RenderedBookPage {
+
+    private final String rowsHtml;
+    private final String nextToken;
+    private final Long nextCursor;
+
+    public RenderedBookPage(String rowsHtml, String nextToken, Long nextCursor) {
+        this.rowsHtml = rowsHtml;
+        this.nextToken = nextToken;
+        this.nextCursor = nextCursor;
+    }
+
+    public String getRowsHtml() {
+        return rowsHtml;
+    }
+
+    public String getNextToken() {
+        return nextToken;
+    }
+
+    public Long getNextCursor() {
+        return nextCursor;
+    }
+}
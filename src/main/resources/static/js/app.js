@@ -2,30 +2,90 @@
 const bookForm = document.getElementById('bookForm');
 const booksContainer = document.getElementById('books-container');
 const reloadBooksButton = document.getElementById('reloadBooks');
+const loadMoreButton = document.getElementById('loadMore');
 
-// Зареждане на всички книги
+const PAGE_SIZE = 50; // Брой книги, които зареждаме наведнъж
+let nextCursor = null; // Курсор (ID) за следващата страница; null означава, че няма повече книги
+
+// Зареждане на книгите от първата страница
 function loadBooks() {
-    fetch('http://localhost:8080/api/books') // Извършва HTTP GET заявка за всички книги
+    booksContainer.innerHTML = ''; // Изчистване на таблицата преди добавяне на нови редове
+    nextCursor = null;
+    loadPage();
+}
+
+// Зареждане на следващата страница книги
+function loadMoreBooks() {
+    if (nextCursor !== null) {
+        loadPage();
+    }
+}
+
+// Зареждане на една страница книги след текущия курсор
+function loadPage() {
+    const after = nextCursor !== null ? `&after=${nextCursor}` : '';
+    fetch(`http://localhost:8080/api/books?limit=${PAGE_SIZE}${after}`) // Извършва HTTP GET заявка за една страница книги
         .then(response => response.json()) // Парсира отговорът от сървъра в JSON формат
-        .then(books => {
-            booksContainer.innerHTML = ''; // Изчистване на таблицата преди добавяне на нови редове
-            books.forEach(book => { // Обхождаме всички книги и ги добавяме към таблицата
-                const row = document.createElement('tr'); // Създаване на нов ред в таблицата
-                row.innerHTML = `
-                    <td>${book.title}</td>  <!-- Показване на заглавието на книгата -->
-                    <td>${book.author.name}</td>  <!-- Показване на името на автора -->
-                    <td>${book.isbn}</td>  <!-- Показване на ISBN на книгата -->
-                    <td>
-                        <button onclick="editBook(${book.id})">Edit</button>  <!-- Бутон за редактиране на книга -->
-                        <button onclick="deleteBook(${book.id})">Delete</button>  <!-- Бутон за изтриване на книга -->
-                    </td>
-                `;
-                booksContainer.appendChild(row); // Добавяме новия ред в таблицата
-            });
+        .then(page => {
+            page.books.forEach(book => booksContainer.appendChild(createRow(book))); // Добавяме книгите от страницата към таблицата
+            nextCursor = page.nextCursor; // Запомняме откъде да продължим
+            loadMoreButton.style.display = nextCursor !== null ? 'block' : 'none'; // Скриваме бутона, ако няма още книги
         })
         .catch(error => console.error('Error:', error)); // Логваме грешката, ако има проблем
 }
 
+// Създаване на ред в таблицата за една книга
+function createRow(book) {
+    const row = document.createElement('tr'); // Създаване на нов ред в таблицата
+    row.dataset.bookId = book.id; // По ID-то намираме реда, когато книгата се промени
+    row.innerHTML = `
+        <td data-field="title"></td>  <!-- Заглавието на книгата -->
+        <td data-field="author"></td>  <!-- Името на автора -->
+        <td data-field="isbn"></td>  <!-- ISBN на книгата -->
+        <td>
+            <button onclick="editBook(${book.id})">Edit</button>  <!-- Бутон за редактиране на книга -->
+            <button onclick="deleteBook(${book.id})">Delete</button>  <!-- Бутон за изтриване на книга -->
+        </td>
+    `;
+    updateRow(row, book);
+    return row;
+}
+
+// Попълване на клетките на реда; при частична промяна (PATCH) липсващите полета остават както са
+function updateRow(row, book) {
+    if (book.title != null) {
+        row.querySelector('[data-field="title"]').textContent = book.title;
+    }
+    if (book.author != null && book.author.name != null) {
+        row.querySelector('[data-field="author"]').textContent = book.author.name;
+    }
+    if (book.isbn != null) {
+        row.querySelector('[data-field="isbn"]').textContent = book.isbn;
+    }
+}
+
+// Прилагане на една промяна от сървъра върху таблицата, без да я презареждаме
+function applyBookEvent(message) {
+    const change = JSON.parse(message.data); // {type, bookId, book}
+    const row = booksContainer.querySelector(`tr[data-book-id="${change.bookId}"]`);
+    if (change.type === 'DELETED') {
+        if (row) {
+            row.remove();
+        }
+    } else if (row) {
+        updateRow(row, change.book);
+    } else if (change.type === 'CREATED' && nextCursor === null) {
+        booksContainer.appendChild(createRow(change.book)); // Новата книга е след последната заредена
+    }
+}
+
+// Абонамент за промените по книгите (Server-Sent Events); браузърът се свързва отново сам с Last-Event-ID
+function subscribeToBookEvents() {
+    const events = new EventSource('http://localhost:8080/api/books/events');
+    ['created', 'updated', 'deleted'].forEach(name => events.addEventListener(name, applyBookEvent));
+    events.addEventListener('resync', loadBooks); // Изостанали сме твърде много - зареждаме първата страница наново
+}
+
 // Функция за добавяне на нова книга
 function addBook(event) {
     event.preventDefault(); // Избягваме презареждането на страницата при изпращане на формата
@@ -36,6 +96,11 @@ function addBook(event) {
         isbn: document.getElementById('isbn').value
     };
 
+    const bookVersion = document.getElementById('bookVersion').value;
+    if (bookVersion) {
+        book.version = Number(bookVersion); // При редакция - версията, която сме видели; чужда промяна дава 409
+    }
+
     const bookId = document.getElementById('bookId').value; // Вземане на ID-то на книгата, ако се редактира
     const method = bookId ? 'PUT' : 'POST'; // Ако има ID, правим PUT заявка, в противен случай - POST
     const url = bookId ? `http://localhost:8080/api/books/${bookId}` : 'http://localhost:8080/api/books'; // Задаваме URL в зависимост от метода
@@ -45,10 +110,11 @@ function addBook(event) {
         headers: { 'Content-Type': 'application/json' },
         body: JSON.stringify(book) // Преобразуваме обекта book в JSON формат
     })
-        .then(response => response.json()) // Парсираме отговорът от сървъра
-        .then(() => {
-            loadBooks(); // Презареждаме списъка с книги
-            resetForm(); // Рестартираме формата
+        .then(response => {
+            if (response.status === 409) { // Книгата е променена от друг или ISBN-ът е зает
+                return response.text().then(message => alert(message));
+            }
+            return response.json().then(() => resetForm()); // Таблицата се обновява от събитието за промяната
         })
         .catch(error => console.error('Error:', error)); // Логваме грешката, ако има проблем
 }
@@ -59,6 +125,7 @@ function editBook(bookId) {
         .then(response => response.json()) // Парсираме отговорът от сървъра в JSON формат
         .then(book => {
             document.getElementById('bookId').value = book.id; // Записваме ID-то на книгата в скритото поле
+            document.getElementById('bookVersion').value = book.version; // И версията ѝ - за проверката при запис
             document.getElementById('title').value = book.title; // Записваме заглавието на книгата във формата
             document.getElementById('author').value = book.author.name; // Записваме името на автора във формата
             document.getElementById('isbn').value = book.isbn; // Записваме ISBN-то на книгата във формата
@@ -73,9 +140,7 @@ function deleteBook(bookId) {
             method: 'DELETE'
         })
             .then(response => {
-                if (response.ok) {
-                    loadBooks(); // Презареждаме списъка с книги след изтриване
-                } else {
+                if (!response.ok) { // При успех редът се премахва от събитието за изтриването
                     alert('Error deleting book'); // Показваме съобщение за грешка, ако не успеем да изтрием книгата
                 }
             })
@@ -86,6 +151,7 @@ function deleteBook(bookId) {
 // Рестартиране на формата
 function resetForm() {
     document.getElementById('bookId').value = ''; // Изчистваме ID-то на книгата
+    document.getElementById('bookVersion').value = ''; // И версията ѝ
     document.getElementById('title').value = ''; // Изчистваме полето за заглавие
     document.getElementById('author').value = ''; // Изчистваме полето за автор
     document.getElementById('isbn').value = ''; // Изчистваме полето за ISBN
@@ -94,8 +160,15 @@ function resetForm() {
 // При натискане на бутон "LOAD ALL BOOKS"
 reloadBooksButton.addEventListener('click', loadBooks); // Добавяме слушател за събитие на бутона "LOAD ALL BOOKS"
 
+// При натискане на бутон "LOAD MORE"
+loadMoreButton.addEventListener('click', loadMoreBooks); // Зареждаме следващата страница книги
+
 // При изпращане на формата
 bookForm.addEventListener('submit', addBook); // Добавяме слушател за събитие при изпращане на формата
 
-// Зареждаме книгите при зареждане на страницата
-loadBooks(); // Първоначално зареждаме всички книги
+// Първата страница идва готова от сървъра - продължаваме от нейния курсор, без да я зареждаме наново
+nextCursor = booksContainer.dataset.nextCursor ? Number(booksContainer.dataset.nextCursor) : null;
+loadMoreButton.style.display = nextCursor !== null ? 'block' : 'none';
+
+// Промените по книгите идват от сървъра - не презареждаме каталога след всеки запис
+subscribeToBookEvents();
@@ -0,0 +1,84 @@
+package bg.home.books.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdaptiveConcurrencyLimiterTest {
+
+    @Test
+    void testLimitGrowsWhileLatencyIsStable() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(10, 1, 100, 0);
+
+        runAtLimit(limiter, 200, 10); // Натоварване до лимита при постоянни 10 ms.
+
+        assertTrue(limiter.getLimit() > 10); // Няма признак за опашка в базата - лимитът расте.
+    }
+
+    @Test
+    void testLimitDropsWhenLatencyRises() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(50, 1, 100, 0);
+        runAtLimit(limiter, 1000, 10);
+        int before = limiter.getLimit();
+
+        runAtLimit(limiter, 50, 100); // Базата се бави десет пъти повече.
+
+        assertTrue(limiter.getLimit() < before / 2); // Лимитът пада бързо.
+    }
+
+    @Test
+    void testQueueIsBounded() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(1, 1, 1, 0);
+
+        assertEquals(AdaptiveConcurrencyLimiter.Result.ACQUIRED, limiter.acquire(Duration.ZERO));
+        assertEquals(AdaptiveConcurrencyLimiter.Result.QUEUE_FULL, limiter.acquire(Duration.ofSeconds(1))); // Без чакане.
+    }
+
+    @Test
+    void testQueuedRequestTimesOut() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(1, 1, 1, 1);
+        limiter.acquire(Duration.ZERO);
+
+        assertEquals(AdaptiveConcurrencyLimiter.Result.TIMED_OUT, limiter.acquire(Duration.ofMillis(10)));
+        assertEquals(0, limiter.getQueued()); // Мястото в опашката е освободено.
+    }
+
+    @Test
+    void testFilterRejectsWithRetryAfter() throws Exception {
+        AdaptiveConcurrencyLimiter reads = new AdaptiveConcurrencyLimiter(1, 1, 1, 0);
+        AdaptiveConcurrencyLimiter writes = new AdaptiveConcurrencyLimiter(1, 1, 1, 0);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        AdmissionControlFilter filter = new AdmissionControlFilter(reads, writes, Duration.ZERO, Duration.ofSeconds(2), registry);
+        reads.acquire(Duration.ZERO); // Бюджетът за четене е зает.
+
+        MockHttpServletResponse rejected = new MockHttpServletResponse();
+        filter.doFilter(new MockHttpServletRequest("GET", "/api/books"), rejected, (req, res) -> fail("Should be rejected"));
+        MockHttpServletResponse written = new MockHttpServletResponse();
+        filter.doFilter(new MockHttpServletRequest("POST", "/api/books"), written, (req, res) -> { });
+
+        assertEquals(429, rejected.getStatus());
+        assertEquals("2", rejected.getHeader("Retry-After"));
+        assertEquals(200, written.getStatus()); // Записите имат собствен бюджет.
+        assertEquals(1, registry.get(AdmissionControlFilter.METRIC_PREFIX + ".rejected").tag("budget", "read").counter().count());
+        assertEquals(0, writes.getInFlight()); // Мястото е освободено след заявката.
+    }
+
+    // Държи броя заявки в обработка равен на лимита и освобождава по една с даденото време
+    private static void runAtLimit(AdaptiveConcurrencyLimiter limiter, int requests, long rttMillis) {
+        for (int i = 0; i < requests; i++) {
+            while (limiter.acquire(Duration.ZERO) == AdaptiveConcurrencyLimiter.Result.ACQUIRED) {
+                // Запълваме до лимита.
+            }
+            limiter.release(rttMillis, TimeUnit.MILLISECONDS);
+        }
+        while (limiter.getInFlight() > 0) {
+            limiter.release(rttMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package bg.home.books.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockAsyncContext;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Лимит от една заявка без опашка - втората едновременна заявка веднага получава 429.
+class AdmissionControlFilterTest {
+
+    private final AdaptiveConcurrencyLimiter reads = new AdaptiveConcurrencyLimiter(1, 1, 1, 0);
+    private final AdmissionControlFilter filter = new AdmissionControlFilter(
+            reads, new AdaptiveConcurrencyLimiter(1, 1, 1, 0), Duration.ZERO, Duration.ofSeconds(1),
+            new SimpleMeterRegistry());
+
+    @Test
+    void testSynchronousRequestReleasesPermit() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(new MockHttpServletRequest("GET", "/api/books/1"), response, (req, res) -> {
+            assertEquals(1, reads.getInFlight()); // Мястото е заето, докато заявката се обработва.
+        });
+
+        assertEquals(200, response.getStatus());
+        assertEquals(0, reads.getInFlight()); // Освободено след края на filterChain.
+    }
+
+    @Test
+    void testExportIsNotLimited() throws Exception {
+        reads.acquire(Duration.ZERO); // Лимитът е зает.
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(new MockHttpServletRequest("GET", "/api/books/export"), response, (req, res) -> {
+            assertEquals(1, reads.getInFlight()); // Експортът не заема място.
+        });
+
+        assertEquals(200, response.getStatus());
+    }
+
+    @Test
+    void testAsyncRequestHoldsPermitUntilComplete() throws Exception {
+        MockHttpServletRequest slow = new MockHttpServletRequest("GET", "/api/books/lookup");
+        slow.setAsyncSupported(true);
+
+        // Контролерът стартира асинхронна обработка и връща нишката
+        filter.doFilter(slow, new MockHttpServletResponse(), (req, res) -> req.startAsync());
+
+        assertEquals(1, reads.getInFlight()); // Отговорът още върви - мястото не е освободено.
+        MockHttpServletResponse rejected = new MockHttpServletResponse();
+        filter.doFilter(new MockHttpServletRequest("GET", "/api/books/1"), rejected, (req, res) -> fail());
+        assertEquals(429, rejected.getStatus());
+
+        slow.getAsyncContext().complete(); // Отговорът приключва.
+
+        assertEquals(0, reads.getInFlight());
+        MockHttpServletResponse accepted = new MockHttpServletResponse();
+        filter.doFilter(new MockHttpServletRequest("GET", "/api/books/1"), accepted, (req, res) -> { });
+        assertEquals(200, accepted.getStatus());
+    }
+
+    @Test
+    void testAsyncTimeoutReleasesPermitOnce() throws Exception {
+        MockHttpServletRequest slow = new MockHttpServletRequest("GET", "/api/books/lookup");
+        slow.setAsyncSupported(true);
+        filter.doFilter(slow, new MockHttpServletResponse(), (req, res) -> req.startAsync());
+        MockAsyncContext asyncContext = (MockAsyncContext) slow.getAsyncContext();
+
+        // Изтекло време, последвано от край - мястото се освобождава само веднъж
+        for (AsyncListener listener : asyncContext.getListeners()) {
+            listener.onTimeout(new AsyncEvent(asyncContext));
+        }
+        asyncContext.complete();
+
+        assertEquals(0, reads.getInFlight());
+    }
+}
@@ -0,0 +1,70 @@
+package bg.home.books.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Врата с две разрешения пред вградена H2 база, която може да бъде "изключена".
+class ConnectionGateDataSourceTest {
+
+    private final StubDataSource target = new StubDataSource();
+    private final ConnectionGateDataSource gate = new ConnectionGateDataSource(target, 2, Duration.ofMillis(50));
+
+    @Test
+    void testCloseReleasesPermitExactlyOnce() throws SQLException {
+        Connection first = gate.getConnection();
+        Connection second = gate.getConnection();
+        assertEquals(0, gate.getAvailablePermits()); // Двете връзки заемат двете места.
+
+        first.close();
+        first.close(); // Повторното затваряне не връща второ разрешение.
+
+        assertEquals(1, gate.getAvailablePermits());
+        second.close();
+        assertEquals(2, gate.getAvailablePermits());
+    }
+
+    @Test
+    void testFailedConnectionReleasesPermit() {
+        target.down = true; // Пулът не дава връзка.
+
+        assertThrows(SQLException.class, gate::getConnection);
+
+        assertEquals(2, gate.getAvailablePermits()); // Разрешението не е изгубено.
+    }
+
+    @Test
+    void testTimesOutWhenAllPermitsAreTaken() throws SQLException {
+        try (Connection first = gate.getConnection(); Connection second = gate.getConnection()) {
+            // Трета връзка чака 50ms и получава бърза грешка вместо да виси в опашката на пула
+            assertThrows(SQLTransientConnectionException.class, gate::getConnection);
+        }
+
+        assertEquals(2, gate.getAvailablePermits());
+    }
+
+    // Връзки от H2, докато не е "изключен"
+    private static class StubDataSource extends DelegatingDataSource {
+
+        private volatile boolean down;
+
+        StubDataSource() {
+            super(new DriverManagerDataSource("jdbc:h2:mem:connection-gate", "sa", ""));
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            if (down) {
+                throw new SQLException("Pool is exhausted");
+            }
+            return super.getConnection();
+        }
+    }
+}
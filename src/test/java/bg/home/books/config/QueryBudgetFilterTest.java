@@ -0,0 +1,39 @@
+package bg.home.books.config;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.servlet.HandlerMapping;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QueryBudgetFilterTest {
+
+    @Test
+    void testStatementsAreRecordedPerEndpoint() throws Exception {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        QueryBudgetFilter filter = new QueryBudgetFilter(registry, 2);
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/books/7");
+
+        filter.doFilter(request, new MockHttpServletResponse(), (req, res) -> {
+            req.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, "/api/books/{id}");
+            QueryCounter.increment(); // Три заявки към базата по време на HTTP заявката.
+            QueryCounter.increment();
+            QueryCounter.increment();
+        });
+
+        DistributionSummary summary = registry.get(QueryBudgetFilter.METRIC_NAME)
+                .tag("uri", "/api/books/{id}")
+                .summary();
+        assertEquals(1, summary.count()); // Една HTTP заявка.
+        assertEquals(3, summary.totalAmount()); // С три SQL заявки.
+    }
+
+    @Test
+    void testStatementsOutsideRequestAreIgnored() {
+        QueryCounter.increment(); // Без start() броячът не съществува.
+        assertEquals(0, QueryCounter.stop());
+    }
+}
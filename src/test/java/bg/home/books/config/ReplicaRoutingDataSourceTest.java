@@ -0,0 +1,133 @@
+package bg.home.books.config;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Две вградени H2 бази - основна и реплика; всяка знае коя е, за да проверим накъде е отишла заявката.
+class ReplicaRoutingDataSourceTest {
+
+    private static final String WHO_AM_I = "select name from whoami";
+
+    private final DataSource primary = database("primary");
+    private final DataSource replica = database("replica");
+
+    private ReplicaRoutingDataSource routing;
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate readOnly;
+    private TransactionTemplate readWrite;
+
+    @BeforeEach
+    void setUp() {
+        init(primary, "primary");
+        init(replica, "replica");
+    }
+
+    @AfterEach
+    void tearDown() {
+        ReadYourWrites.clear();
+        routing.close();
+        new JdbcTemplate(primary).execute("drop all objects");
+        new JdbcTemplate(replica).execute("drop all objects");
+    }
+
+    @Test
+    void testReadOnlyTransactionGoesToReplica() {
+        route(replica);
+
+        assertEquals("replica", readOnly.execute(status -> jdbcTemplate.queryForObject(WHO_AM_I, String.class)));
+        assertEquals("primary", readWrite.execute(status -> jdbcTemplate.queryForObject(WHO_AM_I, String.class)));
+        assertEquals("primary", jdbcTemplate.queryForObject(WHO_AM_I, String.class)); // Без транзакция - основната база.
+    }
+
+    @Test
+    void testReadYourWritesPinsToPrimary() {
+        route(replica);
+
+        ReadYourWrites.pinToPrimary(); // Клиентът току-що е писал.
+
+        assertEquals("primary", readOnly.execute(status -> jdbcTemplate.queryForObject(WHO_AM_I, String.class)));
+    }
+
+    @Test
+    void testOnPrimaryPinsOnlyForTheAction() {
+        route(replica);
+
+        // Четене, чийто резултат отива в споделен кеш, не бива да идва от изоставаща реплика.
+        assertEquals("primary", ReadYourWrites.onPrimary(
+                () -> readOnly.execute(status -> jdbcTemplate.queryForObject(WHO_AM_I, String.class))));
+        assertFalse(ReadYourWrites.isPinned()); // След това нишката отново чете от репликата.
+        assertEquals("replica", readOnly.execute(status -> jdbcTemplate.queryForObject(WHO_AM_I, String.class)));
+    }
+
+    @Test
+    void testUnavailableReplicaFallsBackToPrimary() {
+        FailingDataSource failingReplica = new FailingDataSource(replica);
+        route(failingReplica);
+        failingReplica.down = true; // Репликата спира да дава връзки.
+
+        assertEquals("primary", readOnly.execute(status -> jdbcTemplate.queryForObject(WHO_AM_I, String.class)));
+        assertEquals(1, failingReplica.attempts); // Следващите четения не я пробват повече.
+        assertEquals("primary", readOnly.execute(status -> jdbcTemplate.queryForObject(WHO_AM_I, String.class)));
+        assertEquals(1, failingReplica.attempts);
+
+        failingReplica.down = false;
+        assertEquals(1, routing.checkReplicas()); // Проверката я връща в употреба.
+        assertEquals("replica", readOnly.execute(status -> jdbcTemplate.queryForObject(WHO_AM_I, String.class)));
+    }
+
+    // Същата подредба като в ReplicaRoutingConfig: мързелива връзка пред рутирането
+    private void route(DataSource replicaDataSource) {
+        routing = new ReplicaRoutingDataSource(primary, List.of(replicaDataSource), Duration.ofHours(1));
+        DataSource dataSource = new LazyConnectionDataSourceProxy(routing);
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        readWrite = new TransactionTemplate(transactionManager);
+        readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+    }
+
+    // Реплика, която може да бъде "изключена"
+    private static class FailingDataSource extends DelegatingDataSource {
+
+        private volatile boolean down;
+        private int attempts; // Опити за връзка, докато е изключена
+
+        FailingDataSource(DataSource target) {
+            super(target);
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            if (down) {
+                attempts++;
+                throw new SQLException("Replica is down");
+            }
+            return super.getConnection();
+        }
+    }
+
+    private static DataSource database(String name) {
+        return new DriverManagerDataSource("jdbc:h2:mem:" + name + "-routing;DB_CLOSE_DELAY=-1", "sa", "");
+    }
+
+    private static void init(DataSource dataSource, String name) {
+        JdbcTemplate template = new JdbcTemplate(dataSource);
+        template.execute("create table whoami (name varchar(20))");
+        template.update("insert into whoami values (?)", name);
+    }
+}
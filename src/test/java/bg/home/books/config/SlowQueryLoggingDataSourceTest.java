@@ -0,0 +1,69 @@
+package bg.home.books.config;
+
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SlowQueryLoggingDataSourceTest {
+
+    private final Logger sqlLogger = (Logger) LoggerFactory.getLogger("bg.home.books.sql");
+    private final ListAppender<ILoggingEvent> appender = new ListAppender<>();
+
+    @BeforeEach
+    void setUp() {
+        appender.start();
+        sqlLogger.addAppender(appender);
+    }
+
+    @AfterEach
+    void tearDown() {
+        sqlLogger.detachAppender(appender);
+    }
+
+    @Test
+    void testSlowQueryIsLoggedWithBindValues() {
+        JdbcTemplate jdbcTemplate = jdbcTemplate(Duration.ZERO, 0); // Всяка заявка е "бавна".
+
+        Integer result = jdbcTemplate.queryForObject("select cast(? as int) + 1", Integer.class, 41);
+
+        assertEquals(42, result); // Обвивката не променя резултата.
+        assertEquals(1, appender.list.size());
+        String message = appender.list.get(0).getFormattedMessage();
+        assertTrue(message.startsWith("Slow SQL")); // Над прага.
+        assertTrue(message.contains("select cast(? as int) + 1 [1=41]")); // Заявката и параметрите ѝ.
+    }
+
+    @Test
+    void testFastQueryIsNotLoggedWithoutSampling() {
+        JdbcTemplate jdbcTemplate = jdbcTemplate(Duration.ofHours(1), 0);
+
+        jdbcTemplate.queryForObject("select 1", Integer.class);
+
+        assertTrue(appender.list.isEmpty()); // Под прага и без извадка - нищо в лога.
+    }
+
+    @Test
+    void testSampledQueryIsLogged() {
+        JdbcTemplate jdbcTemplate = jdbcTemplate(Duration.ofHours(1), 1.0); // Извадка от 100%.
+
+        jdbcTemplate.queryForObject("select 1", Integer.class);
+
+        assertEquals(1, appender.list.size());
+        assertTrue(appender.list.get(0).getFormattedMessage().startsWith("Sampled SQL"));
+    }
+
+    private static JdbcTemplate jdbcTemplate(Duration threshold, double sampleRate) {
+        DriverManagerDataSource target = new DriverManagerDataSource("jdbc:h2:mem:slow-query-log", "sa", "");
+        return new JdbcTemplate(new SlowQueryLoggingDataSource(target, threshold, sampleRate));
+    }
+}
@@ -0,0 +1,48 @@
+package bg.home.books.init;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SyntheticDataGeneratorTest {
+
+    @Test
+    void testIsbn13HasValidCheckDigit() {
+        assertEquals("9780000000002", SyntheticDataGenerator.isbn13(0)); // 978 + нули, контролна цифра 2.
+        assertEquals("9780306406157", SyntheticDataGenerator.isbn13(30640615)); // Известен валиден ISBN-13.
+    }
+
+    @Test
+    void testAuthorNamesAreUnique() {
+        Set<String> names = new HashSet<>();
+        for (int i = 0; i < 5000; i++) {
+            assertTrue(names.add(SyntheticDataGenerator.authorName(i))); // Уникалният индекс по name изисква различни имена.
+        }
+    }
+
+    @Test
+    void testZipfFavoursFirstRanks() {
+        double[] cdf = SyntheticDataGenerator.zipfCdf(1000, 1.07);
+        SplittableRandom random = new SplittableRandom(1);
+        int[] counts = new int[1000];
+        for (int i = 0; i < 100_000; i++) {
+            counts[SyntheticDataGenerator.zipfRank(cdf, random.nextDouble())]++;
+        }
+
+        assertTrue(counts[0] > counts[9] * 5); // Първият автор има много повече книги от десетия.
+        assertTrue(counts[9] > counts[999]); // А десетият - повече от последния.
+    }
+
+    @Test
+    void testTitlesAreLongCyrillic() {
+        String title = SyntheticDataGenerator.title(new SplittableRandom(7));
+
+        assertTrue(title.split(" ").length >= 4); // Поне четири думи.
+        assertEquals(Character.UnicodeBlock.CYRILLIC, Character.UnicodeBlock.of(title.charAt(0))); // На кирилица.
+        assertTrue(Character.isUpperCase(title.charAt(0))); // Започва с главна буква.
+    }
+}
@@ -0,0 +1,144 @@
+package bg.home.books.repository;
+
+import bg.home.books.model.entity.AuthorEntity;
+import bg.home.books.model.entity.BookEntity;
+import bg.home.books.model.entity.dto.AuthorSummaryDTO;
+import bg.home.books.model.entity.dto.BookChangeDTO;
+import bg.home.books.model.entity.dto.BookDTO;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.PageRequest;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Тестове срещу вградена H2 база, които броят реално изпълнените SQL заявки.
+@DataJpaTest(properties = {
+        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+class BookRepositoryTest {
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private AuthorRepository authorRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics; // Статистики на Hibernate (брой изпълнени заявки).
+
+    private Long firstBookId; // ID на първата записана книга.
+
+    private Long firstAuthorId; // ID на първия записан автор.
+
+    @BeforeEach
+    void setUp() {
+        // Записваме трима автора с по две книги, за да може N+1 да се прояви.
+        for (int i = 0; i < 3; i++) {
+            AuthorEntity author = entityManager.persist(new AuthorEntity().setName("Author " + i));
+            if (firstAuthorId == null) {
+                firstAuthorId = author.getId();
+            }
+            for (int j = 0; j < 2; j++) {
+                BookEntity book = entityManager.persist(new BookEntity()
+                        .setTitle("Book " + i + "-" + j)
+                        .setIsbn("isbn-" + i + "-" + j)
+                        .setAuthor(author));
+                if (firstBookId == null) {
+                    firstBookId = book.getId();
+                }
+            }
+        }
+        entityManager.flush();
+        entityManager.clear(); // Изчистваме контекста, за да не се ползват кеширани entity-та.
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear(); // Броим само заявките от самия тест.
+    }
+
+    @Test
+    void testFindAllBookDTOs_SingleQuery() {
+        List<BookDTO> books = bookRepository.findAllBookDTOs();
+
+        assertEquals(6, books.size()); // Проверяваме, че са върнати всички книги.
+        assertEquals("Author 0", books.get(0).getAuthor().getName()); // Името на автора идва от join-а.
+        assertEquals(1, statistics.getPrepareStatementCount()); // Целият списък струва точно една заявка.
+        assertEquals(0, statistics.getEntityLoadCount()); // Не се зареждат entity-та.
+    }
+
+    @Test
+    void testFindPageAfter_SingleQuery() {
+        List<BookDTO> page = bookRepository.findPageAfter(firstBookId, PageRequest.of(0, 3));
+
+        assertEquals(3, page.size()); // Проверяваме размера на страницата.
+        assertTrue(page.stream().allMatch(book -> book.getId() > firstBookId)); // Всички книги са след курсора.
+        assertEquals(1, statistics.getPrepareStatementCount()); // Страницата струва точно една заявка.
+    }
+
+    @Test
+    void testFindBookDTOById_SingleQuery() {
+        Optional<BookDTO> book = bookRepository.findBookDTOById(firstBookId);
+
+        assertTrue(book.isPresent()); // Проверяваме, че книгата е намерена.
+        assertEquals("Book 0-0", book.get().getTitle()); // Проверяваме заглавието.
+        assertEquals("Author 0", book.get().getAuthor().getName()); // Проверяваме името на автора.
+        assertEquals(1, statistics.getPrepareStatementCount()); // Само една заявка.
+    }
+
+    @Test
+    void testFindSummaryPageAfter_CountsBooksInOneQuery() {
+        entityManager.persist(new AuthorEntity().setName("Author without books"));
+        entityManager.flush();
+        entityManager.clear();
+        statistics.clear();
+
+        List<AuthorSummaryDTO> authors = authorRepository.findSummaryPageAfter(0L, PageRequest.of(0, 10));
+
+        assertEquals(4, authors.size()); // Авторът без книги също е в списъка.
+        assertEquals(2, authors.get(0).getBookCount()); // Всеки от първите трима има по две книги.
+        assertEquals(0, authors.get(3).getBookCount()); // Left join - нула книги, а не липсващ ред.
+        assertEquals(1, statistics.getPrepareStatementCount()); // Броят идва от самата заявка.
+        assertEquals(0, statistics.getCollectionLoadCount()); // Колекцията books не се зарежда.
+    }
+
+    @Test
+    void testFindPageByAuthorAfter_SingleQuery() {
+        List<BookDTO> page = bookRepository.findPageByAuthorAfter(firstAuthorId, 0L, PageRequest.of(0, 10));
+
+        assertEquals(2, page.size()); // Само книгите на този автор.
+        assertTrue(page.stream().allMatch(book -> "Author 0".equals(book.getAuthor().getName())));
+        assertEquals(1, statistics.getPrepareStatementCount()); // Една заявка за страницата.
+    }
+
+    @Test
+    void testFindChangesAfter_RangeScanWithTimestamps() {
+        Instant until = Instant.now().plusSeconds(60);
+
+        List<BookChangeDTO> changes = bookRepository.findChangesAfter(Instant.EPOCH, 0L, until, PageRequest.of(0, 4));
+
+        assertEquals(4, changes.size()); // Ограничено до размера на страницата.
+        assertNotNull(changes.get(0).getChangedAt()); // updated_at е попълнен от базата при INSERT.
+        assertEquals("CREATED", changes.get(0).getType()); // Книгите не са променяни след създаването.
+        assertEquals(1, statistics.getPrepareStatementCount()); // Една заявка.
+
+        BookChangeDTO last = changes.get(3);
+        List<BookChangeDTO> rest = bookRepository.findChangesAfter(last.getChangedAt(), last.getBookId(), until,
+                PageRequest.of(0, 10));
+        assertEquals(2, rest.size()); // Продължаваме точно след курсора.
+    }
+}
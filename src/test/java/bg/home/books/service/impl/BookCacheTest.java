@@ -0,0 +1,77 @@
+package bg.home.books.service.impl;
+
+import bg.home.books.config.ReadYourWrites;
+import bg.home.books.config.ReplicaLag;
+import bg.home.books.model.entity.dto.BookDTO;
+import bg.home.books.service.event.BookChangedEvent;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BookCacheTest {
+
+    private final BookDTO book = new BookDTO(1L, "Под Игото", "111", "Иван Вазов");
+
+    @Test
+    void testUpdateEventEvictsBook() {
+        BookCache cache = new BookCache(true, 100, Duration.ofMinutes(1));
+        AtomicInteger loads = new AtomicInteger(); // Брой заявки към "базата".
+
+        cache.get(1L, id -> { loads.incrementAndGet(); return Optional.of(book); });
+        cache.onBookChanged(BookChangedEvent.created(new BookDTO(2L, "Нова", "222", "Автор"))); // Създаване не изчиства кеша.
+        cache.get(1L, id -> { loads.incrementAndGet(); return Optional.of(book); });
+        assertEquals(1, loads.get()); // Книгата е заредена само веднъж.
+
+        cache.onBookChanged(BookChangedEvent.updated(book)); // Промяната изчиства записа.
+        cache.get(1L, id -> { loads.incrementAndGet(); return Optional.of(book); });
+        assertEquals(2, loads.get()); // След промяната книгата се зарежда наново.
+    }
+
+    @Test
+    void testMissingBooksAreNotCached() {
+        BookCache cache = new BookCache(true, 100, Duration.ofMinutes(1));
+
+        assertTrue(cache.get(1L, id -> Optional.empty()).isEmpty()); // Книгата липсва.
+        assertTrue(cache.get(1L, id -> Optional.of(book)).isPresent()); // След създаването ѝ се намира веднага.
+    }
+
+    @Test
+    void testRowFromLaggingReplicaIsNotCached() {
+        BookCache cache = new BookCache(true, 100, Duration.ofMinutes(1));
+        ReplicaLag replicaLag = new ReplicaLag(true, Duration.ofMinutes(1));
+        AtomicInteger loads = new AtomicInteger();
+
+        replicaLag.onBookChanged(BookChangedEvent.updated(book)); // Промяна току-що - репликата може да изостава.
+        cache.get(1L, id -> { loads.incrementAndGet(); return Optional.of(book); }, replicaLag::mayBeStale);
+        Optional<BookDTO> loaded = cache.get(1L, id -> { loads.incrementAndGet(); return Optional.of(book); },
+                replicaLag::mayBeStale);
+
+        assertEquals(book, loaded.orElseThrow()); // Редът се връща на клиента,
+        assertEquals(2, loads.get()); // но не остава в кеша за следващите.
+        assertNull(cache.peek(1L));
+
+        ReadYourWrites.pinToPrimary(); // Четене от основната база - вече се кешира.
+        try {
+            cache.get(1L, id -> Optional.of(book), replicaLag::mayBeStale);
+        } finally {
+            ReadYourWrites.clear();
+        }
+        assertEquals(book, cache.peek(1L));
+    }
+
+    @Test
+    void testDisabledCacheAlwaysLoads() {
+        BookCache cache = new BookCache(false, 100, Duration.ofMinutes(1));
+        AtomicInteger loads = new AtomicInteger();
+
+        cache.get(1L, id -> { loads.incrementAndGet(); return Optional.of(book); });
+        cache.get(1L, id -> { loads.incrementAndGet(); return Optional.of(book); });
+
+        assertEquals(2, loads.get()); // Изключеният кеш не пази нищо.
+        assertFalse(cache.getStats().isEnabled());
+    }
+}
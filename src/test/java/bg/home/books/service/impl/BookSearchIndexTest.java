@@ -0,0 +1,109 @@
+package bg.home.books.service.impl;
+
+import bg.home.books.model.entity.dto.BookDTO;
+import bg.home.books.model.entity.dto.BookSearchPageDTO;
+import bg.home.books.repository.BookRepository;
+import bg.home.books.service.event.BookChangedEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class BookSearchIndexTest {
+
+    private BookRepository bookRepository;
+    private BookSearchIndex index;
+
+    @BeforeEach
+    void setUp() {
+        bookRepository = mock(BookRepository.class);
+        index = new BookSearchIndex(bookRepository, mock(PlatformTransactionManager.class));
+        index.index(new BookDTO(1L, "Под Игото", "111", "Иван Вазов"));
+        index.index(new BookDTO(2L, "Тъгите на България", "222", "Иван Вазов"));
+        index.index(new BookDTO(3L, "Старопланински легенди", "333", "Йордан Йовков"));
+        index.index(new BookDTO(4L, "Ян Бибиян на луната", "444", "Елин Пелин"));
+    }
+
+    @Test
+    void testSearchIsCaseAndDiacriticInsensitive() {
+        BookSearchPageDTO result = index.search("ЙОВКОВ", 0, 10);
+
+        assertEquals(1, result.getTotal()); // Главните букви и "Й" не пречат на търсенето.
+        assertEquals(3L, result.getBooks().get(0).getId());
+    }
+
+    @Test
+    void testSearchByPrefixAcrossTitleAndAuthor() {
+        BookSearchPageDTO result = index.search("ваз иго", 0, 10);
+
+        assertEquals(1, result.getTotal()); // И двете думи трябва да съвпаднат.
+        assertEquals("Под Игото", result.getBooks().get(0).getTitle());
+    }
+
+    @Test
+    void testTitleMatchesRankAboveAuthorMatches() {
+        index.index(new BookDTO(5L, "Книга за Вазов", "555", "Друг Автор"));
+
+        BookSearchPageDTO result = index.search("вазов", 0, 10);
+
+        assertEquals(3, result.getTotal());
+        assertEquals(5L, result.getBooks().get(0).getId()); // Съвпадението в заглавието е най-отгоре.
+    }
+
+    @Test
+    void testPaging() {
+        BookSearchPageDTO result = index.search("на", 1, 1);
+
+        assertEquals(2, result.getTotal()); // "на" се среща в две заглавия.
+        assertEquals(1, result.getBooks().size()); // Но страницата е с размер 1.
+    }
+
+    @Test
+    void testUpdateAndDeleteEvents() {
+        index.onBookChanged(BookChangedEvent.updated(new BookDTO(1L, "Немили-недраги", "111", "Иван Вазов")));
+        assertEquals(0, index.search("игото", 0, 10).getTotal()); // Старото заглавие вече не се намира.
+        assertEquals(1, index.search("немили", 0, 10).getTotal()); // Новото заглавие се намира.
+
+        index.onBookChanged(BookChangedEvent.deleted(1L));
+        assertEquals(0, index.search("немили", 0, 10).getTotal()); // Изтритата книга изчезва от индекса.
+        assertEquals(3, index.size());
+    }
+
+    @Test
+    void testRebuildKeepsChangesMadeWhileStreaming() {
+        BookDTO staleFirst = new BookDTO(1L, "Под Игото", "111", "Иван Вазов", 0L);
+        BookDTO staleSecond = new BookDTO(2L, "Тъгите на България", "222", "Иван Вазов", 0L);
+        when(bookRepository.streamAllBookDTOs()).thenReturn(Stream.of(staleFirst, staleSecond).peek(book -> {
+            if (book.getId() == 1L) {
+                // Докато каталогът се чете, книга 2 е изтрита, а книга 1 - преименувана.
+                index.onBookChanged(BookChangedEvent.deleted(2L));
+                index.onBookChanged(BookChangedEvent.updated(new BookDTO(1L, "Немили-недраги", "111", "Иван Вазов", 1L)));
+            }
+        }));
+
+        index.rebuild();
+
+        assertEquals(1, index.size()); // Изтритата книга не се е върнала от прочетения по-стар ред.
+        assertEquals(0, index.search("тъгите", 0, 10).getTotal());
+        assertEquals(0, index.search("игото", 0, 10).getTotal()); // Старото заглавие не е презаписало новото.
+        assertEquals(1, index.search("немили", 0, 10).getTotal());
+    }
+
+    @Test
+    void testPartialChangeOfUnknownBookLoadsTheRow() {
+        when(bookRepository.findBookDTOById(9L))
+                .thenReturn(Optional.of(new BookDTO(9L, "Бай Ганьо", "999", "Алеко Константинов", 2L)));
+
+        // PATCH носи само заглавието - авторът и ISBN-ът идват от реда в базата.
+        index.onBookChanged(BookChangedEvent.updated(new BookDTO(9L, "Бай Ганьо", null, null, 2L)));
+
+        assertEquals(1, index.search("алеко", 0, 10).getTotal());
+        assertEquals("999", index.search("ганьо", 0, 10).getBooks().get(0).getIsbn());
+    }
+}
@@ -1,20 +1,51 @@
 package bg.home.books.service.impl;
 
+import bg.home.books.config.ReadYourWrites;
+import bg.home.books.config.ReplicaLag;
 import bg.home.books.model.entity.AuthorEntity;
 import bg.home.books.model.entity.BookEntity;
 import bg.home.books.model.entity.dto.AuthorDTO;
+import bg.home.books.model.entity.dto.BookBatchDTO;
+import bg.home.books.model.entity.dto.BookChangeDTO;
+import bg.home.books.model.entity.dto.BookChangesDTO;
 import bg.home.books.model.entity.dto.BookDTO;
+import bg.home.books.model.entity.dto.BookImportResultDTO;
+import bg.home.books.model.entity.dto.BookPageDTO;
+import bg.home.books.repository.AuthorJdbcRepository;
+import bg.home.books.repository.AuthorJdbcRepository.AuthorRef;
 import bg.home.books.repository.AuthorRepository;
+import bg.home.books.repository.BookJdbcRepository;
 import bg.home.books.repository.BookRepository;
+import bg.home.books.repository.BookTombstoneRepository;
+import bg.home.books.service.BookSort;
+import bg.home.books.service.event.BookChangedEvent;
+import bg.home.books.service.exception.BookVersionConflictException;
+import bg.home.books.service.exception.DuplicateIsbnException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
-
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -28,6 +59,46 @@ class BookServiceImplTest {
     @Mock
     private AuthorRepository authorRepository; // Мокваме репозиторията за автори, за да не правим реални заявки към базата данни.
 
+    @Mock
+    private BookJdbcRepository bookJdbcRepository; // Мокваме JDBC достъпа за масовите операции с книги.
+
+    @Mock
+    private AuthorJdbcRepository authorJdbcRepository; // Мокваме JDBC достъпа за масовите операции с автори.
+
+    @Mock
+    private BookTombstoneRepository bookTombstoneRepository; // Мокваме следите от изтритите книги.
+
+    @Mock
+    private TransactionTemplate transactionTemplate; // Мокваме транзакциите на импорта.
+
+    @Spy
+    private AuthorIdCache authorIdCache = new AuthorIdCache(100); // Реален кеш на ID-тата на авторите.
+
+    @Spy
+    private BookCache bookCache = new BookCache(true, 100, Duration.ofMinutes(1)); // Реален кеш за единични книги.
+
+    @Spy
+    private CatalogVersion catalogVersion = new CatalogVersion(); // Реален брояч на промените в каталога.
+
+    @Spy
+    private ReplicaLag replicaLag = new ReplicaLag(false, Duration.ofSeconds(5)); // Без реплики - всичко се кешира.
+
+    @Mock
+    private BookSearchIndex bookSearchIndex; // Мокваме индекса за търсене.
+
+    @Mock
+    private IsbnFilter isbnFilter; // Мокваме Bloom филтъра за ISBN.
+
+    @Spy
+    private SingleFlightTimeouts singleFlightTimeouts = new SingleFlightTimeouts(
+            Duration.ofSeconds(60), Duration.ofSeconds(5), Duration.ofSeconds(5)); // Чакания като по подразбиране.
+
+    @Spy
+    private SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry(); // Реален регистър за метриките.
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher; // Мокваме публикуването на събития за промени.
+
     @InjectMocks
     private BookServiceImpl bookService; // Инжектираме мокнатите зависимости в сервиза за книги.
 
@@ -103,71 +174,233 @@ class BookServiceImplTest {
 
     @Test
     void testGetAllBooks() {
-        when(bookRepository.findAll()).thenReturn(List.of(bookEntity)); // Мокваме метода findAll да върне списък с bookEntity.
+        when(bookRepository.findAllBookDTOs()).thenReturn(List.of(bookDTO)); // Мокваме проекцията да върне списък с bookDTO.
 
         List<BookDTO> result = bookService.getAllBooks(); // Извикваме метода getAllBooks.
 
         assertEquals(1, result.size()); // Проверяваме дали списъкът съдържа точно една книга.
         assertEquals("Test Book", result.get(0).getTitle()); // Проверяваме дали книгата има правилно заглавие.
-        verify(bookRepository, times(1)).findAll(); // Проверяваме дали методът findAll е извикан точно веднъж.
+        verify(bookRepository, times(1)).findAllBookDTOs(); // Проверяваме дали проекцията е извикана точно веднъж.
+        verify(bookRepository, never()).findAll(); // Entity-тата не се зареждат изобщо.
+    }
+
+    @Test
+    void testGetBooksPage_HasNextPage() {
+        BookDTO secondBook = new BookDTO(2L, "Second Book", "987654321", "John Doe");
+        when(bookRepository.findPageAfter(0L, PageRequest.of(0, 2)))
+                .thenReturn(List.of(bookDTO, secondBook)); // Мокваме seek заявката да върне един ред повече от лимита.
+
+        BookPageDTO result = bookService.getBooksPage(null, 1); // Искаме първата страница с една книга.
+
+        assertEquals(1, result.getBooks().size()); // Проверяваме, че допълнителният ред не е върнат.
+        assertEquals("Test Book", result.getBooks().get(0).getTitle()); // Проверяваме заглавието на книгата.
+        assertEquals(1L, result.getNextCursor()); // Курсорът сочи последната върната книга.
+    }
+
+    @Test
+    void testGetBooksPage_LastPage() {
+        when(bookRepository.findPageAfter(1L, PageRequest.of(0, 51)))
+                .thenReturn(List.of()); // Мокваме, че след курсора няма повече книги.
+
+        BookPageDTO result = bookService.getBooksPage(1L, 50); // Искаме страницата след книга с ID 1.
+
+        assertTrue(result.getBooks().isEmpty()); // Проверяваме, че страницата е празна.
+        assertNull(result.getNextCursor()); // Няма следваща страница.
+    }
+
+    @Test
+    void testGetBooksPage_ByTitleUsesTitleCursor() {
+        BookDTO secondBook = new BookDTO(2L, "Second: Book", "987654321", "John Doe");
+        when(bookRepository.findPageByTitleAfter("First: Book", 7L, PageRequest.of(0, 2)))
+                .thenReturn(List.of(secondBook, bookDTO)); // Мокваме seek заявката по (заглавие, id).
+
+        BookPageDTO result = bookService.getBooksPage(BookSort.TITLE, "7:First: Book", 1); // Заглавието съдържа ':'.
+
+        assertEquals("Second: Book", result.getBooks().get(0).getTitle());
+        assertEquals("2:Second: Book", result.getNextToken()); // Курсорът е (id, заглавие) на последната книга.
+        assertNull(result.getNextCursor()); // Числовият курсор е само за подредба по ID.
+    }
+
+    @Test
+    void testExportBooks() {
+        when(bookRepository.streamAllBookDTOs()).thenReturn(Stream.of(bookDTO)); // Мокваме потока от базата.
+
+        List<BookDTO> exported = new ArrayList<>();
+        bookService.exportBooks(exported::add); // Извикваме експорта и събираме редовете.
+
+        assertEquals(1, exported.size()); // Проверяваме, че редът е подаден на консуматора.
+        assertEquals("Test Book", exported.get(0).getTitle()); // Проверяваме заглавието на книгата.
+        verify(bookRepository, never()).findAllBookDTOs(); // Каталогът не се зарежда в паметта.
     }
 
     @Test
     void testFindBookById() {
-        when(bookRepository.findById(1L)).thenReturn(Optional.of(bookEntity)); // Мокваме метода findById да върне bookEntity.
+        when(bookRepository.findBookDTOById(1L)).thenReturn(Optional.of(bookDTO)); // Мокваме проекцията да върне bookDTO.
 
         Optional<BookDTO> result = bookService.findBookById(1L); // Извикваме метода findBookById.
 
         assertTrue(result.isPresent()); // Проверяваме дали резултатът не е празен.
         assertEquals("Test Book", result.get().getTitle()); // Проверяваме заглавието на книгата.
-        verify(bookRepository, times(1)).findById(1L); // Проверяваме дали методът findById е извикан точно веднъж.
+        verify(bookRepository, times(1)).findBookDTOById(1L); // Проверяваме дали проекцията е извикана точно веднъж.
+    }
+
+    @Test
+    void testFindBookById_ServedFromCache() {
+        when(bookRepository.findBookDTOById(1L)).thenReturn(Optional.of(bookDTO)); // Мокваме проекцията да върне bookDTO.
+
+        bookService.findBookById(1L); // Първото извикване зарежда книгата от базата.
+        Optional<BookDTO> result = bookService.findBookById(1L); // Второто трябва да дойде от кеша.
+
+        assertTrue(result.isPresent()); // Проверяваме дали резултатът не е празен.
+        verify(bookRepository, times(1)).findBookDTOById(1L); // Базата е питана само веднъж.
+        assertEquals(1, bookService.getBookCacheStats().getHits()); // Отчетено е едно попадение в кеша.
+    }
+
+    @Test
+    void testFindBookVersion_CachedBookNeedsNoQuery() {
+        when(bookRepository.findBookDTOById(1L)).thenReturn(Optional.of(bookDTO.setVersion(3L)));
+        bookService.findBookById(1L); // Книгата влиза в кеша.
+
+        Optional<Long> version = bookService.findBookVersion(1L);
+
+        assertEquals(Optional.of(3L), version); // Версията идва от кешираната книга.
+        verify(bookRepository, never()).findVersionById(any()); // Без заявка към базата.
     }
 
     @Test
     void testFindBookById_NotFound() {
-        when(bookRepository.findById(1L)).thenReturn(Optional.empty()); // Мокваме метода findById да върне Optional.empty() (не намира книга).
+        when(bookRepository.findBookDTOById(1L)).thenReturn(Optional.empty()); // Мокваме проекцията да върне Optional.empty() (не намира книга).
 
         Optional<BookDTO> result = bookService.findBookById(1L); // Извикваме метода findBookById.
 
         assertFalse(result.isPresent()); // Проверяваме дали резултатът е празен (няма намерена книга).
-        verify(bookRepository, times(1)).findById(1L); // Проверяваме дали методът findById е извикан точно веднъж.
+        verify(bookRepository, times(1)).findBookDTOById(1L); // Проверяваме дали проекцията е извикана точно веднъж.
+    }
+
+    @Test
+    void testFindBooksByIds_KeepsRequestOrderAndMarksMissing() {
+        BookDTO second = new BookDTO(2L, "Тютюн", "222", "Димитър Димов");
+        when(bookRepository.findBookDTOsByIdIn(anyList())).thenReturn(List.of(second, bookDTO)); // Базата връща в свой ред.
+
+        BookBatchDTO result = bookService.findBooksByIds(List.of(2L, 5L, 1L));
+
+        assertEquals(3, result.getBooks().size()); // По един елемент за всяко поискано ID.
+        assertEquals("Тютюн", result.getBooks().get(0).getTitle()); // Редът е като в заявката.
+        assertNull(result.getBooks().get(1)); // На мястото на липсващата книга има null.
+        assertEquals("Test Book", result.getBooks().get(2).getTitle());
+        assertEquals(List.of(5L), result.getMissingIds()); // Липсващото ID е отбелязано.
+        verify(bookRepository, times(1)).findBookDTOsByIdIn(anyList()); // Една IN заявка.
+    }
+
+    @Test
+    void testFindBooksByIds_CachedBooksNeedNoQuery() {
+        when(bookRepository.findBookDTOById(1L)).thenReturn(Optional.of(bookDTO));
+        bookService.findBookById(1L); // Книгата влиза в кеша.
+
+        BookBatchDTO result = bookService.findBooksByIds(List.of(1L));
+
+        assertEquals("Test Book", result.getBooks().get(0).getTitle());
+        verify(bookRepository, never()).findBookDTOsByIdIn(anyList()); // Всичко е дошло от кеша.
+    }
+
+    @Test
+    void testFindBookByIsbn_DefiniteMissSkipsDatabase() {
+        when(isbnFilter.mightContain("000")).thenReturn(false); // Филтърът е сигурен, че такъв ISBN няма.
+
+        Optional<BookDTO> result = bookService.findBookByIsbn("000");
+
+        assertFalse(result.isPresent()); // Книга няма.
+        verify(bookRepository, never()).findByIsbn(any()); // Базата изобщо не е питана.
+    }
+
+    @Test
+    void testFindBookByIsbn_PossibleHitQueriesDatabase() {
+        when(isbnFilter.mightContain("123456789")).thenReturn(true); // Филтърът казва "може би".
+        when(bookRepository.findByIsbn("123456789")).thenReturn(Optional.of(bookDTO));
+
+        Optional<BookDTO> result = bookService.findBookByIsbn("123456789");
+
+        assertTrue(result.isPresent()); // Книгата е намерена по уникалния индекс.
+        assertEquals("Test Book", result.get().getTitle());
+    }
+
+    @Test
+    void testCreateBook_DuplicateIsbn() {
+        when(isbnFilter.mightContain("123456789")).thenReturn(true);
+        when(bookRepository.findByIsbn("123456789")).thenReturn(Optional.of(bookDTO)); // ISBN-ът вече е зает.
+
+        assertThrows(DuplicateIsbnException.class, () -> bookService.createBook(mapToDTO(bookEntity)));
+        verify(bookRepository, never()).save(any()); // Книгата не се записва.
+    }
+
+    @Test
+    void testCreateBook_ConcurrentDuplicateIsbn() {
+        // Друга заявка със същия ISBN е минала проверката едновременно с нас и е записала първа.
+        runTransactionCallbacks();
+        when(authorJdbcRepository.getOrCreate("John Doe")).thenReturn(new AuthorRef(5L, "John Doe"));
+        when(authorRepository.getReferenceById(5L)).thenReturn(authorEntity);
+        when(bookRepository.save(any())).thenThrow(new DataIntegrityViolationException("ux_books_isbn"));
+        when(bookRepository.findByIsbn("123456789")).thenReturn(Optional.of(bookDTO)); // Bloom филтърът не знае за нея.
+
+        assertThrows(DuplicateIsbnException.class, () -> bookService.createBook(mapToDTO(bookEntity))); // 409, не 500.
+        verify(eventPublisher, never()).publishEvent(any(BookChangedEvent.class));
     }
 
     @Test
     void testCreateBook_NewAuthor() {
-        when(authorRepository.findByName("John Doe")).thenReturn(Optional.empty()); // Мокваме, че авторът не съществува в базата.
-        when(authorRepository.save(any())).thenReturn(authorEntity); // Мокваме записа на нов автор.
+        when(authorJdbcRepository.getOrCreate("John Doe")).thenReturn(new AuthorRef(5L, "John Doe")); // Мокваме намирането/създаването на автора.
+        when(authorRepository.getReferenceById(5L)).thenReturn(authorEntity); // Мокваме референцията към автора.
         when(bookRepository.save(any())).thenReturn(bookEntity); // Мокваме записа на нова книга.
 
         BookDTO result = bookService.createBook(mapToDTO(bookEntity)); // Извикваме метода за създаване на книга.
 
         assertNotNull(result); // Проверяваме дали резултатът не е null.
         assertEquals("Test Book", result.getTitle()); // Проверяваме заглавието на книгата.
-        verify(authorRepository, times(1)).findByName("John Doe"); // Проверяваме дали е извикана проверка за автора.
-        verify(authorRepository, times(1)).save(any()); // Проверяваме дали е извикан методът за запис на автора.
+        assertEquals("John Doe", result.getAuthor().getName()); // Проверяваме името на автора.
+        verify(authorJdbcRepository, times(1)).getOrCreate("John Doe"); // Проверяваме дали авторът е намерен или създаден.
+        assertEquals(5L, authorIdCache.get("John Doe").id()); // ID-то на автора е запомнено в кеша.
         verify(bookRepository, times(1)).save(any()); // Проверяваме дали е извикан методът за запис на книгата.
     }
 
     @Test
     void testCreateBook_ExistingAuthor() {
-        when(authorRepository.findByName("John Doe")).thenReturn(Optional.of(authorEntity)); // Мокваме, че авторът вече съществува.
+        authorIdCache.put("John Doe", new AuthorRef(5L, "John Doe")); // Авторът вече е в кеша.
+        when(authorRepository.getReferenceById(5L)).thenReturn(authorEntity); // Мокваме референцията към автора.
         when(bookRepository.save(any())).thenReturn(bookEntity); // Мокваме записа на книга.
 
         BookDTO result = bookService.createBook(mapToDTO(bookEntity)); // Извикваме метода за създаване на книга.
 
         assertNotNull(result); // Проверяваме дали резултатът не е null.
         assertEquals("Test Book", result.getTitle()); // Проверяваме заглавието на книгата.
-        verify(authorRepository, times(1)).findByName("John Doe"); // Проверяваме дали е извикана проверка за автора.
+        verify(authorJdbcRepository, never()).getOrCreate(any()); // Познатият автор не струва нито една заявка.
+        verify(authorRepository, never()).findByName(any()); // Няма търсене по име в базата.
         verify(bookRepository, times(1)).save(any()); // Проверяваме дали е извикан методът за запис на книгата.
     }
 
+    @Test
+    void testCreateBook_ReturnsStoredAuthorName() {
+        // Уникалният индекс не различава главни и малки букви - името съвпада със съществуващия автор.
+        when(authorJdbcRepository.getOrCreate("john doe")).thenReturn(new AuthorRef(5L, "John Doe"));
+        when(authorRepository.getReferenceById(5L)).thenReturn(authorEntity);
+        when(bookRepository.save(any())).thenReturn(bookEntity);
+
+        BookDTO result = bookService.createBook(new BookDTO()
+                .setTitle("Test Book")
+                .setIsbn("123456789")
+                .setAuthor(new AuthorDTO().setName("john doe")));
+
+        assertEquals("John Doe", result.getAuthor().getName()); // Името е както е записано в базата, не както е подадено.
+        assertEquals("John Doe", authorIdCache.get("john doe").name());
+    }
+
     @Test
     void testUpdateBook() {
         when(bookRepository.findById(1L)).thenReturn(Optional.of(bookEntity)); // Мокваме метода findById да върне книга.
-        when(authorRepository.findByName("John Doe")).thenReturn(Optional.of(authorEntity)); // Мокваме метода findByName да върне автор.
+        when(authorJdbcRepository.getOrCreate("John Doe")).thenReturn(new AuthorRef(5L, "John Doe")); // Мокваме намирането на автора.
+        when(authorRepository.getReferenceById(5L)).thenReturn(authorEntity); // Мокваме референцията към автора.
         when(bookRepository.save(any())).thenReturn(bookEntity); // Мокваме записа на книга.
 
-        Optional<BookDTO> result = bookService.updateBook(1L, mapToDTO(bookEntity)); // Извикваме метода за актуализиране на книга.
+        Optional<BookDTO> result = bookService.updateBook(1L, null, mapToDTO(bookEntity)); // Извикваме метода за актуализиране на книга.
 
         assertTrue(result.isPresent()); // Проверяваме дали резултатът не е празен.
         assertEquals("Test Book", result.get().getTitle()); // Проверяваме заглавието на книгата.
@@ -175,11 +408,71 @@ class BookServiceImplTest {
         verify(bookRepository, times(1)).save(any()); // Проверяваме дали е извикан методът за записа на книгата.
     }
 
+    @Test
+    void testUpdateBook_StaleExpectedVersion() {
+        bookEntity.setVersion(3L); // Книгата вече е във версия 3.
+        when(bookRepository.findById(1L)).thenReturn(Optional.of(bookEntity));
+
+        BookVersionConflictException e = assertThrows(BookVersionConflictException.class,
+                () -> bookService.updateBook(1L, 2L, mapToDTO(bookEntity))); // Клиентът е видял версия 2.
+
+        assertEquals(3L, e.getCurrentVersion());
+        verify(bookRepository, never()).save(any()); // Чуждата промяна не се презаписва.
+    }
+
+    @Test
+    void testUpdateBook_ConcurrentWriteIsConflict() {
+        bookEntity.setVersion(3L);
+        when(bookRepository.findById(1L)).thenReturn(Optional.of(bookEntity));
+        when(authorJdbcRepository.getOrCreate("John Doe")).thenReturn(new AuthorRef(5L, "John Doe"));
+        when(authorRepository.getReferenceById(5L)).thenReturn(authorEntity);
+        when(bookRepository.save(any())).thenThrow(new ObjectOptimisticLockingFailureException(BookEntity.class, 1L));
+        when(bookRepository.findVersionById(1L)).thenReturn(Optional.of(4L)); // Друга заявка е записала след четенето ни.
+
+        BookVersionConflictException e = assertThrows(BookVersionConflictException.class,
+                () -> bookService.updateBook(1L, null, mapToDTO(bookEntity)));
+
+        assertEquals(4L, e.getCurrentVersion()); // Клиентът получава текущата версия за новия ETag.
+        verify(eventPublisher, never()).publishEvent(any(BookChangedEvent.class));
+    }
+
+    @Test
+    void testPatchBook_SingleUpdateWithoutRead() {
+        when(bookJdbcRepository.updateBookFields(1L, 4L, "Нов", null, null)).thenReturn(1); // Версията съвпада.
+
+        Optional<Long> version = bookService.patchBook(1L, 4L, new BookDTO().setTitle("Нов"));
+
+        assertEquals(Optional.of(5L), version); // Връща новата версия.
+        verify(bookRepository, never()).findById(any()); // Без четене преди записа.
+        verify(bookRepository, never()).findVersionById(any());
+        verify(eventPublisher).publishEvent(any(BookChangedEvent.class)); // Кешовете и индексите научават за промяната.
+    }
+
+    @Test
+    void testPatchBook_VersionConflict() {
+        when(bookJdbcRepository.updateBookFields(1L, 4L, "Нов", null, null)).thenReturn(0); // Друг е променил книгата.
+        when(bookRepository.findVersionById(1L)).thenReturn(Optional.of(6L));
+
+        BookVersionConflictException e = assertThrows(BookVersionConflictException.class,
+                () -> bookService.patchBook(1L, 4L, new BookDTO().setTitle("Нов")));
+
+        assertEquals(6L, e.getCurrentVersion()); // Клиентът научава текущата версия.
+        verify(eventPublisher, never()).publishEvent(any(BookChangedEvent.class));
+    }
+
+    @Test
+    void testPatchBook_NotFound() {
+        when(bookJdbcRepository.updateBookFields(9L, 0L, "Нов", null, null)).thenReturn(0);
+        when(bookRepository.findVersionById(9L)).thenReturn(Optional.empty()); // Книгата не съществува.
+
+        assertTrue(bookService.patchBook(9L, 0L, new BookDTO().setTitle("Нов")).isEmpty());
+    }
+
     @Test
     void testUpdateBook_NotFound() {
         when(bookRepository.findById(1L)).thenReturn(Optional.empty()); // Мокваме метода findById да не намери книга.
 
-        Optional<BookDTO> result = bookService.updateBook(1L, mapToDTO(bookEntity)); // Извикваме метода за актуализиране на книга.
+        Optional<BookDTO> result = bookService.updateBook(1L, null, mapToDTO(bookEntity)); // Извикваме метода за актуализиране на книга.
 
         assertFalse(result.isPresent()); // Проверяваме дали резултатът е празен.
         verify(bookRepository, times(1)).findById(1L); // Проверяваме дали е извикан методът findById.
@@ -188,16 +481,20 @@ class BookServiceImplTest {
 
     @Test
     void testDeleteBook() {
+        runTransactionCallbacks();
         doNothing().when(bookRepository).deleteById(1L); // Мокваме метода deleteById да не прави нищо.
 
         bookService.deleteBookById(1L); // Извикваме метода за изтриване на книга.
 
         verify(bookRepository, times(1)).deleteById(1L); // Проверяваме дали методът deleteById е извикан точно веднъж.
+        verify(bookJdbcRepository, times(1)).insertTombstones(List.of(1L)); // Остава следа за синхронизацията.
+        verify(eventPublisher, times(1)).publishEvent(any(BookChangedEvent.class)); // Кешовете са уведомени за изтриването.
     }
 
     @Test
     void testDeleteBook_NotFound() {
         // Симулираме, че книгата с id 2 не е намерена
+        runTransactionCallbacks();
         doNothing().when(bookRepository).deleteById(2L); // Мокваме метода deleteById да не прави нищо.
 
         // Извикваме метода deleteBookById
@@ -207,4 +504,183 @@ class BookServiceImplTest {
         verify(bookRepository, times(1)).deleteById(2L); // Проверяваме дали методът е извикан веднъж.
     }
 
+    @Test
+    void testDeleteBooks_ChunkedSetBasedDelete() {
+        runTransactionCallbacks();
+        List<Long> ids = new ArrayList<>();
+        for (long id = 1; id <= BookServiceImpl.IDS_CHUNK_SIZE + 1; id++) {
+            ids.add(id);
+        }
+        when(bookRepository.deleteAllByIdIn(anyList())).thenReturn(BookServiceImpl.IDS_CHUNK_SIZE, 1);
+
+        int deleted = bookService.deleteBooks(ids);
+
+        assertEquals(BookServiceImpl.IDS_CHUNK_SIZE + 1, deleted); // Сумата от изтритите редове.
+        verify(bookRepository, times(2)).deleteAllByIdIn(anyList()); // Две порции - две DELETE заявки.
+        verify(bookRepository, never()).findById(any()); // Без зареждане на entity-та.
+        verify(eventPublisher, times(ids.size())).publishEvent(any(BookChangedEvent.class)); // Всяко ID излиза от кешовете.
+    }
+
+    @Test
+    void testDeleteBooksByAuthor() {
+        runTransactionCallbacks();
+        when(bookRepository.findIdsByAuthorName("John Doe")).thenReturn(List.of(1L, 2L));
+        when(bookRepository.deleteAllByIdIn(List.of(1L, 2L))).thenReturn(2);
+
+        assertEquals(2, bookService.deleteBooksByAuthor("John Doe")); // Изтрити са двете книги на автора.
+    }
+
+    @Test
+    void testImportBooks_CreatesMissingAuthorsAndReportsInvalidRows() {
+        AuthorEntity savedAuthor = new AuthorEntity().setId(5L).setName("John Doe");
+        when(authorRepository.findAllByNameIn(any()))
+                .thenReturn(List.of()) // Първо авторът не съществува,
+                .thenReturn(List.of(savedAuthor)); // а след пакетния INSERT вече е в базата.
+        runTransactionCallbacks();
+        when(bookJdbcRepository.insertBooks(any(), any())).thenReturn(List.of(10L)); // Мокваме генерираното ID.
+
+        BookDTO invalidBook = new BookDTO().setTitle("No Author").setIsbn("111"); // Ред без автор.
+        BookImportResultDTO result = bookService.importBooks(List.of(bookDTO, invalidBook));
+
+        assertEquals(1, result.getImported()); // Записана е само валидната книга.
+        assertEquals(1, result.getErrors().size()); // Невалидният ред е отчетен като грешка.
+        assertEquals(2, result.getErrors().get(0).getRow()); // Грешката сочи втория ред.
+        verify(authorJdbcRepository, times(1)).insertAuthors(List.of("John Doe")); // Липсващият автор е създаден.
+        verify(bookJdbcRepository, times(1)).insertBooks(List.of(bookDTO), Map.of("John Doe", 5L)); // Книгата е записана с пакет.
+        verify(authorRepository, never()).findByName(any()); // Няма заявка за автор на всеки ред.
+        verify(eventPublisher, times(1)).publishEvent(any(BookChangedEvent.class)); // Слушателите научават за новата книга.
+    }
+
+    @Test
+    void testImportBooks_AuthorSpelledDifferentlyIsFound() {
+        BookDTO shouting = new BookDTO(null, "Title", "123", "JOHN DOE");
+        when(authorRepository.findAllByNameIn(any())).thenReturn(List.of(authorEntity.setId(5L))); // Записан е "John Doe".
+        runTransactionCallbacks();
+        when(bookJdbcRepository.insertBooks(any(), any())).thenReturn(List.of(10L));
+
+        assertEquals(1, bookService.importBooks(List.of(shouting)).getImported());
+
+        verify(authorJdbcRepository, never()).insertAuthors(any()); // Авторът не е "липсващ".
+        verify(bookJdbcRepository, times(1)).insertBooks(List.of(shouting), Map.of("JOHN DOE", 5L));
+        verify(eventPublisher).publishEvent(argThat((BookChangedEvent event) ->
+                "John Doe".equals(event.getBook().getAuthor().getName()))); // Слушателите получават записаното име.
+    }
+
+    @Test
+    void testImportBooks_FailedBatchFallsBackToSingleRows() {
+        BookDTO duplicate = new BookDTO(null, "Duplicate", "123456789", "John Doe");
+        when(authorRepository.findAllByNameIn(any())).thenReturn(List.of(authorEntity.setId(5L)));
+        runTransactionCallbacks();
+        doThrow(new DataIntegrityViolationException("batch failed"))
+                .when(bookJdbcRepository).insertBooks(any(), any()); // Пакетът се проваля заради един ред.
+        doReturn(11L).when(bookJdbcRepository).insertBook(eq(bookDTO), any());
+        doThrow(new DataIntegrityViolationException("duplicate"))
+                .when(bookJdbcRepository).insertBook(eq(duplicate), any());
+
+        BookImportResultDTO result = bookService.importBooks(List.of(bookDTO, duplicate));
+
+        assertEquals(1, result.getImported()); // Добрият ред е записан.
+        assertEquals(1, result.getErrors().size()); // Само проблемният ред е отчетен.
+        assertEquals(2, result.getErrors().get(0).getRow()); // Грешката сочи втория ред.
+    }
+
+    @Test
+    void testGetChanges_MergesUpdatesAndDeletionsInOrder() {
+        Instant t1 = Instant.parse("2024-01-01T10:00:00Z");
+        Instant t2 = t1.plusMillis(1);
+        Instant t3 = t1.plusMillis(2);
+        Instant databaseNow = t1.plusSeconds(60);
+        Instant until = databaseNow.minus(BookServiceImpl.CHANGES_SETTLE_TIME); // Границата е по часовника на базата.
+        when(bookJdbcRepository.currentTimestamp()).thenReturn(databaseNow);
+        when(bookRepository.findChangesAfter(eq(Instant.EPOCH), eq(0L), eq(until), eq(PageRequest.of(0, 3))))
+                .thenReturn(List.of(new BookChangeDTO(1L, "Title", "111", "John Doe", 0L, t1),
+                        new BookChangeDTO(3L, "Other", "333", "John Doe", 2L, t3)));
+        when(bookTombstoneRepository.findDeletionsAfter(eq(Instant.EPOCH), eq(0L), eq(until), eq(PageRequest.of(0, 3))))
+                .thenReturn(List.of(new BookChangeDTO(2L, t2)));
+
+        BookChangesDTO changes = bookService.getChanges(null, 2);
+
+        assertEquals(List.of(1L, 2L), changes.getChanges().stream().map(BookChangeDTO::getBookId).toList()); // По момент на промяната.
+        assertEquals("CREATED", changes.getChanges().get(0).getType());
+        assertEquals("DELETED", changes.getChanges().get(1).getType());
+        assertTrue(changes.isHasMore()); // Третата промяна е за следващия път.
+        assertEquals(BookServiceImpl.changeToken(t2, 2L), changes.getNextToken()); // Продължаваме след изтриването.
+    }
+
+    @Test
+    void testGetChanges_ContinuesFromToken() {
+        Instant at = Instant.parse("2024-01-01T10:00:00.123456Z");
+        when(bookJdbcRepository.currentTimestamp()).thenReturn(at.plusSeconds(60));
+        when(bookRepository.findChangesAfter(eq(at), eq(7L), any(), any())).thenReturn(List.of());
+        when(bookTombstoneRepository.findDeletionsAfter(eq(at), eq(7L), any(), any())).thenReturn(List.of());
+
+        BookChangesDTO changes = bookService.getChanges(BookServiceImpl.changeToken(at, 7L), 100);
+
+        assertTrue(changes.getChanges().isEmpty()); // Няма нищо ново.
+        assertEquals(BookServiceImpl.changeToken(at, 7L), changes.getNextToken()); // Токенът остава същият.
+    }
+
+    @Test
+    void testGetChanges_InvalidToken() {
+        assertThrows(IllegalArgumentException.class, () -> bookService.getChanges("garbage", 10));
+    }
+
+    @Test
+    void testGetAllBooks_ConcurrentCallsShareOneQuery() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(bookRepository.findAllBookDTOs()).thenAnswer(invocation -> {
+            loading.countDown();
+            release.await(5, TimeUnit.SECONDS); // Държим заявката отворена, докато второто извикване се присъедини.
+            return List.of(bookDTO);
+        });
+
+        CompletableFuture<List<BookDTO>> first = CompletableFuture.supplyAsync(bookService::getAllBooks);
+        assertTrue(loading.await(5, TimeUnit.SECONDS));
+        CompletableFuture<List<BookDTO>> second = CompletableFuture.supplyAsync(bookService::getAllBooks);
+        Thread.sleep(100);
+        release.countDown();
+
+        assertEquals(List.of(bookDTO), first.get(5, TimeUnit.SECONDS));
+        assertEquals(List.of(bookDTO), second.get(5, TimeUnit.SECONDS));
+        verify(bookRepository, times(1)).findAllBookDTOs(); // Една заявка за двете извиквания.
+        assertEquals(1, meterRegistry.get(BookServiceImpl.SINGLE_FLIGHT_METRIC)
+                .tag("operation", "getAllBooks").tag("outcome", "collapsed")
+                .functionCounter().count()); // Второто извикване е отчетено като обединено.
+    }
+
+    @Test
+    void testGetAllBooks_PinnedCallDoesNotJoinReplicaLoad() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(bookRepository.findAllBookDTOs()).thenAnswer(invocation -> {
+            loading.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return List.of(bookDTO);
+        });
+
+        CompletableFuture<List<BookDTO>> first = CompletableFuture.supplyAsync(bookService::getAllBooks);
+        assertTrue(loading.await(5, TimeUnit.SECONDS));
+        // Клиентът току-що е писал - зареждането на първото извикване може да е от изоставаща реплика
+        CompletableFuture<List<BookDTO>> pinned = CompletableFuture.supplyAsync(() -> {
+            ReadYourWrites.pinToPrimary();
+            try {
+                return bookService.getAllBooks();
+            } finally {
+                ReadYourWrites.clear();
+            }
+        });
+        Thread.sleep(100);
+        release.countDown();
+
+        first.get(5, TimeUnit.SECONDS);
+        pinned.get(5, TimeUnit.SECONDS);
+        verify(bookRepository, times(2)).findAllBookDTOs(); // Закаченото извикване чете само.
+    }
+
+    // Изпълняваме подадения към TransactionTemplate код директно.
+    private void runTransactionCallbacks() {
+        doAnswer(invocation -> ((TransactionCallback<?>) invocation.getArgument(0)).doInTransaction(null))
+                .when(transactionTemplate).execute(any());
+    }
 }
@@ -0,0 +1,45 @@
+package bg.home.books.service.impl;
+
+import bg.home.books.model.entity.dto.BookDTO;
+import bg.home.books.repository.BookRepository;
+import bg.home.books.service.event.BookChangedEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class IsbnFilterTest {
+
+    private BookRepository bookRepository;
+    private IsbnFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        bookRepository = mock(BookRepository.class);
+        filter = new IsbnFilter(bookRepository, mock(PlatformTransactionManager.class), 1000, 0.01, true);
+    }
+
+    @Test
+    void testLookupIgnoresCaseLikeTheColumn() {
+        when(bookRepository.streamAllIsbns()).thenReturn(Stream.of("080442957X"));
+        filter.rebuild();
+
+        assertTrue(filter.mightContain("080442957x")); // Контролната цифра с малка буква е същият ISBN.
+        assertTrue(filter.mightContain(" 080442957X ")); // Интервалите около него също не го променят.
+    }
+
+    @Test
+    void testAddedIsbnIsNormalised() {
+        when(bookRepository.streamAllIsbns()).thenReturn(Stream.empty());
+        filter.rebuild();
+
+        filter.onBookChanged(BookChangedEvent.created(new BookDTO(1L, "Заглавие", "030640615x", "Автор")));
+
+        assertTrue(filter.mightContain("030640615X"));
+    }
+}
@@ -0,0 +1,104 @@
+package bg.home.books.service.impl;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.QueryTimeoutException;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SingleFlightTest {
+
+    private final SingleFlight<String, Integer> singleFlight = new SingleFlight<>(Duration.ofSeconds(5));
+
+    @Test
+    void testConcurrentCallsShareOneLoad() throws Exception {
+        AtomicInteger loads = new AtomicInteger(); // Брой реални зареждания.
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        CompletableFuture<Integer> first = CompletableFuture.supplyAsync(() -> singleFlight.execute("key", () -> {
+            loads.incrementAndGet();
+            loading.countDown();
+            await(release); // Държим първото зареждане отворено, докато второто се присъедини.
+            return 42;
+        }));
+        assertTrue(loading.await(5, TimeUnit.SECONDS));
+
+        CompletableFuture<Integer> second = CompletableFuture.supplyAsync(() -> singleFlight.execute("key", () -> {
+            loads.incrementAndGet();
+            return 0;
+        }));
+        Thread.sleep(100); // Даваме време на второто извикване да се закачи за първото.
+        release.countDown();
+
+        assertEquals(42, first.get(5, TimeUnit.SECONDS));
+        assertEquals(42, second.get(5, TimeUnit.SECONDS)); // Второто извикване получава резултата на първото.
+        assertEquals(1, loads.get()); // Зареждането е изпълнено само веднъж.
+        assertEquals(0, singleFlight.inFlightCount()); // След края нищо не остава в полет.
+    }
+
+    @Test
+    void testErrorIsRethrownAndNotRemembered() {
+        assertThrows(IllegalStateException.class, () -> singleFlight.execute("key", () -> {
+            throw new IllegalStateException("boom");
+        }));
+
+        assertEquals(7, singleFlight.execute("key", () -> 7)); // Грешката не остава кеширана.
+    }
+
+    @Test
+    void testErrorReachesEveryWaiter() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        CompletableFuture<Integer> first = CompletableFuture.supplyAsync(() -> singleFlight.execute("key", () -> {
+            loading.countDown();
+            await(release);
+            throw new IllegalStateException("boom");
+        }));
+        assertTrue(loading.await(5, TimeUnit.SECONDS));
+        CompletableFuture<Integer> second = CompletableFuture.supplyAsync(() -> singleFlight.execute("key", () -> 0));
+        Thread.sleep(100);
+        release.countDown();
+
+        ExecutionException firstError = assertThrows(ExecutionException.class, () -> first.get(5, TimeUnit.SECONDS));
+        ExecutionException secondError = assertThrows(ExecutionException.class, () -> second.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalStateException.class, firstError.getCause());
+        assertInstanceOf(IllegalStateException.class, secondError.getCause()); // Чакащият получава същата грешка.
+        assertEquals(1, singleFlight.collapsedCount());
+    }
+
+    @Test
+    void testWaitIsBounded() throws Exception {
+        SingleFlight<String, Integer> bounded = new SingleFlight<>(Duration.ofMillis(50));
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        CompletableFuture<Integer> slow = CompletableFuture.supplyAsync(() -> bounded.execute("key", () -> {
+            loading.countDown();
+            await(release); // Зареждането виси.
+            return 1;
+        }));
+        assertTrue(loading.await(5, TimeUnit.SECONDS));
+
+        assertThrows(QueryTimeoutException.class, () -> bounded.execute("key", () -> 2)); // Чакащият се отказва.
+        assertEquals(1, bounded.timeoutCount());
+
+        release.countDown();
+        assertEquals(1, slow.get(5, TimeUnit.SECONDS)); // Първото зареждане завършва нормално.
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package bg.home.books.service.impl;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StringBloomFilterTest {
+
+    @Test
+    void testNoFalseNegatives() {
+        StringBloomFilter filter = new StringBloomFilter(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) {
+            filter.put("978-" + i);
+        }
+
+        for (int i = 0; i < 10_000; i++) {
+            assertTrue(filter.mightContain("978-" + i)); // Добавеният ISBN винаги е "може би".
+        }
+    }
+
+    @Test
+    void testFalsePositiveRateStaysNearTarget() {
+        StringBloomFilter filter = new StringBloomFilter(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) {
+            filter.put("978-" + i);
+        }
+
+        int falsePositives = 0;
+        for (int i = 0; i < 10_000; i++) {
+            if (filter.mightContain("979-" + i)) {
+                falsePositives++;
+            }
+        }
+        assertTrue(falsePositives < 300, "false positives: " + falsePositives); // Около 1%, с голям запас.
+    }
+}
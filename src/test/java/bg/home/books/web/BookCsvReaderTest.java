@@ -0,0 +1,35 @@
+package bg.home.books.web;
+
+import bg.home.books.model.entity.dto.BookDTO;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BookCsvReaderTest {
+
+    @Test
+    void testReadWithQuotedFields() throws IOException {
+        String csv = "isbn,title,author\r\n" +
+                "111,\"Под Игото, роман\",Иван Вазов\r\n" +
+                "\n" +
+                "222,\"Заглавие с \"\"кавички\"\"\",Елин Пелин\n";
+
+        List<BookDTO> books = BookCsvReader.read(new StringReader(csv));
+
+        assertEquals(2, books.size()); // Празният ред е пропуснат.
+        assertEquals("Под Игото, роман", books.get(0).getTitle()); // Запетаята в кавички е част от полето.
+        assertEquals("Иван Вазов", books.get(0).getAuthor().getName()); // Колоните се намират по заглавния ред.
+        assertEquals("111", books.get(0).getIsbn());
+        assertEquals("Заглавие с \"кавички\"", books.get(1).getTitle()); // Двойните кавички се разкодират.
+    }
+
+    @Test
+    void testReadWithMissingColumn() {
+        assertThrows(IllegalArgumentException.class,
+                () -> BookCsvReader.read(new StringReader("title,isbn\nx,1\n"))); // Липсва колона author.
+    }
+}
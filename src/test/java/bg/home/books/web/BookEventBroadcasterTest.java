@@ -0,0 +1,69 @@
+package bg.home.books.web;
+
+import bg.home.books.model.entity.dto.AuthorDTO;
+import bg.home.books.model.entity.dto.BookDTO;
+import bg.home.books.service.event.BookChangedEvent;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BookEventBroadcasterTest {
+
+    // Буфер за продължаване от 3 събития и опашка от 10 на абонат.
+    private final BookEventBroadcaster broadcaster = new BookEventBroadcaster(new ObjectMapper(),
+            Duration.ofMinutes(1), Duration.ofHours(1), 10, 3, 1, 4, Duration.ofSeconds(10));
+
+    @AfterEach
+    void tearDown() {
+        broadcaster.close();
+    }
+
+    @Test
+    void testNewSubscriberMissedNothing() {
+        publish(1L);
+
+        assertEquals(0, broadcaster.missedSince(null).size()); // Без Last-Event-ID - само новите събития.
+    }
+
+    @Test
+    void testResumeReplaysEventsAfterLastEventId() {
+        publish(1L);
+        String lastSeen = broadcaster.currentId();
+        publish(2L);
+        publish(3L);
+
+        assertEquals(2, broadcaster.missedSince(lastSeen).size()); // Пропуснати са второто и третото.
+        assertEquals(0, broadcaster.missedSince(broadcaster.currentId()).size()); // Нищо не е пропуснато.
+    }
+
+    @Test
+    void testResumeTooFarBehindNeedsResync() {
+        publish(1L);
+        String lastSeen = broadcaster.currentId();
+        for (long id = 2; id <= 5; id++) {
+            publish(id); // Буферът пази само последните три - второто събитие вече е изхвърлено.
+        }
+
+        assertNull(broadcaster.missedSince(lastSeen));
+    }
+
+    @Test
+    void testIdFromPreviousStartNeedsResync() {
+        publish(1L);
+
+        assertNull(broadcaster.missedSince("other-1")); // Номерата от друго стартиране не са съпоставими.
+        assertNull(broadcaster.missedSince("garbage"));
+    }
+
+    private void publish(Long id) {
+        broadcaster.onBookChanged(BookChangedEvent.created(new BookDTO()
+                .setId(id)
+                .setTitle("Book " + id)
+                .setIsbn("isbn-" + id)
+                .setAuthor(new AuthorDTO().setName("Author"))));
+    }
+}
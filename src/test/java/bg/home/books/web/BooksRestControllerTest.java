@@ -0,0 +1,265 @@
+package bg.home.books.web;
+
+import bg.home.books.config.ReplicaLag;
+import bg.home.books.model.entity.dto.BookBatchDTO;
+import bg.home.books.model.entity.dto.BookDTO;
+import bg.home.books.model.entity.dto.BookPageDTO;
+import bg.home.books.service.BookService;
+import bg.home.books.service.exception.BookVersionConflictException;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.WireFormat;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.hasItem;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(BooksRestController.class)
+class BooksRestControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private BookService bookService; // Мокваме сервиза - тестваме само HTTP слоя.
+
+    @MockBean
+    private BookEventBroadcaster bookEvents;
+
+    @MockBean
+    private ReplicaLag replicaLag; // По подразбиране false - четенията са актуални.
+
+    @Test
+    void testBookEvents_PassesLastEventId() throws Exception {
+        when(bookEvents.subscribe("abc-7")).thenReturn(new SseEmitter());
+
+        mockMvc.perform(get("/api/books/events").header("Last-Event-ID", "abc-7"))
+                .andExpect(request().asyncStarted()); // Отговорът остава отворен за събитията.
+
+        verify(bookEvents).subscribe("abc-7"); // Продължаваме от последното получено събитие.
+    }
+
+    @Test
+    void testGetBooksPage_NotModified() throws Exception {
+        when(bookService.getCatalogETag()).thenReturn("catalog-1-5");
+
+        mockMvc.perform(get("/api/books").header("If-None-Match", "\"catalog-1-5\""))
+                .andExpect(status().isNotModified()); // Каталогът не е променян - 304.
+
+        verify(bookService, never()).getBooksPage(any(), anyInt()); // Страницата изобщо не се зарежда.
+    }
+
+    @Test
+    void testGetBooksPage_ReturnsETag() throws Exception {
+        when(bookService.getCatalogETag()).thenReturn("catalog-1-6");
+        when(bookService.getBooksPage(null, 50)).thenReturn(new BookPageDTO().setBooks(List.of()));
+
+        mockMvc.perform(get("/api/books").header("If-None-Match", "\"catalog-1-5\""))
+                .andExpect(status().isOk()) // Каталогът е променен - връщаме данните.
+                .andExpect(header().string("ETag", "\"catalog-1-6\""));
+    }
+
+    @Test
+    void testGetBooksPage_NoETagWhileReplicaMayLag() throws Exception {
+        when(bookService.getCatalogETag()).thenReturn("catalog-1-7");
+        when(replicaLag.mayBeStale(anyLong())).thenReturn(true); // Току-що е имало запис.
+        when(bookService.getBooksPage(null, 50)).thenReturn(new BookPageDTO().setBooks(List.of()));
+
+        mockMvc.perform(get("/api/books").header("If-None-Match", "\"catalog-1-7\""))
+                .andExpect(status().isOk()) // Без 304 - старото копие на клиента може да е от репликата.
+                .andExpect(header().doesNotExist("ETag")); // Страницата може да е отпреди версия 7.
+    }
+
+    @Test
+    void testFindBookById_NotModified() throws Exception {
+        when(bookService.findBookVersion(1L)).thenReturn(Optional.of(2L));
+
+        mockMvc.perform(get("/api/books/1").header("If-None-Match", "\"book-1-2\""))
+                .andExpect(status().isNotModified()); // Версията съвпада - 304.
+
+        verify(bookService, never()).findBookById(any()); // Книгата не се зарежда и не се сериализира.
+    }
+
+    @Test
+    void testFindBookById_ReturnsETag() throws Exception {
+        when(bookService.findBookVersion(1L)).thenReturn(Optional.of(3L));
+        when(bookService.findBookById(1L)).thenReturn(Optional.of(new BookDTO(1L, "Тютюн", "111", "Димитър Димов", 3L)));
+
+        mockMvc.perform(get("/api/books/1").header("If-None-Match", "\"book-1-2\""))
+                .andExpect(status().isOk()) // Книгата е променена след версия 2.
+                .andExpect(header().string("ETag", "\"book-1-3\""))
+                .andExpect(jsonPath("$.title").value("Тютюн"));
+    }
+
+    @Test
+    void testFindBooksByIds() throws Exception {
+        when(bookService.findBooksByIds(List.of(3L, 1L))).thenReturn(new BookBatchDTO()
+                .setBooks(Arrays.asList(null, new BookDTO(1L, "Тютюн", "111", "Димитър Димов", 0L)))
+                .setMissingIds(List.of(3L)));
+
+        mockMvc.perform(get("/api/books").param("ids", "3,1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.books[0]").doesNotExist()) // Липсващата книга е null на своето място.
+                .andExpect(jsonPath("$.books[1].title").value("Тютюн"))
+                .andExpect(jsonPath("$.missingIds[0]").value(3));
+
+        verify(bookService, never()).getBooksPage(any(), anyInt()); // Не се бърка със страницирането.
+    }
+
+    @Test
+    void testFindBookById_Protobuf() throws Exception {
+        BookDTO book = new BookDTO(1L, "Тютюн", "111", "Димитър Димов", 3L);
+        when(bookService.findBookVersion(1L)).thenReturn(Optional.of(3L));
+        when(bookService.findBookById(1L)).thenReturn(Optional.of(book));
+
+        byte[] body = mockMvc.perform(get("/api/books/1").accept(BookProtobufHttpMessageConverter.PROTOBUF))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(BookProtobufHttpMessageConverter.PROTOBUF))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        CodedInputStream in = CodedInputStream.newInstance(body);
+        assertEquals(1, WireFormat.getTagFieldNumber(in.readTag())); // id
+        assertEquals(1L, in.readInt64());
+        assertEquals(2, WireFormat.getTagFieldNumber(in.readTag())); // title
+        assertEquals("Тютюн", in.readString());
+        assertEquals(BookProtobuf.bookSize(book), body.length); // Нищо излишно след книгата.
+    }
+
+    @Test
+    void testFindBookById_Cbor() throws Exception {
+        when(bookService.findBookVersion(1L)).thenReturn(Optional.of(3L));
+        when(bookService.findBookById(1L)).thenReturn(Optional.of(new BookDTO(1L, "Тютюн", "111", "Димитър Димов", 3L)));
+
+        byte[] body = mockMvc.perform(get("/api/books/1").accept(MediaType.APPLICATION_CBOR))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_CBOR))
+                .andExpect(header().string("ETag", "\"book-1-3-cbor\"")) // Други байтове - друг ETag.
+                .andExpect(header().stringValues("Vary", hasItem(containsString("Accept")))) // За кешовете по пътя.
+                .andReturn().getResponse().getContentAsByteArray();
+
+        BookDTO decoded = new CBORMapper().readValue(body, BookDTO.class);
+        assertEquals("Тютюн", decoded.getTitle()); // CBOR се декодира до същата книга.
+    }
+
+    @Test
+    void testFindBookById_JsonETagDoesNotMatchCbor() throws Exception {
+        when(bookService.findBookVersion(1L)).thenReturn(Optional.of(3L));
+        when(bookService.findBookById(1L)).thenReturn(Optional.of(new BookDTO(1L, "Тютюн", "111", "Димитър Димов", 3L)));
+
+        // Кеш с CBOR копието не бива да получи 304 за JSON клиент
+        mockMvc.perform(get("/api/books/1").accept(MediaType.APPLICATION_JSON).header("If-None-Match", "\"book-1-3-cbor\""))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(header().string("ETag", "\"book-1-3\""));
+    }
+
+    @Test
+    void testFindBookById_DefaultsToJson() throws Exception {
+        when(bookService.findBookVersion(1L)).thenReturn(Optional.of(3L));
+        when(bookService.findBookById(1L)).thenReturn(Optional.of(new BookDTO(1L, "Тютюн", "111", "Димитър Димов", 3L)));
+
+        mockMvc.perform(get("/api/books/1").accept(MediaType.ALL))
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON)); // Без изричен формат - JSON.
+    }
+
+    @Test
+    void testExportBooks_HonoursQualityValues() throws Exception {
+        mockMvc.perform(get("/api/books/export").header("Accept", "application/x-ndjson, application/cbor;q=0.1"))
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON)); // CBOR е поискан, но с по-ниско q.
+
+        mockMvc.perform(get("/api/books/export").header("Accept", "application/cbor;q=0.5, application/x-protobuf"))
+                .andExpect(content().contentType(BookProtobufHttpMessageConverter.PROTOBUF)); // Протобуф е с q=1.
+    }
+
+    @Test
+    void testPatchBook_VersionFromIfMatch() throws Exception {
+        when(bookService.patchBook(eq(1L), eq(2L), any())).thenReturn(Optional.of(3L));
+
+        mockMvc.perform(patch("/api/books/1")
+                        .header("If-Match", "\"book-1-2\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"title\":\"Тютюн\"}"))
+                .andExpect(status().isNoContent())
+                .andExpect(header().string("ETag", "\"book-1-3\"")); // Новата версия.
+    }
+
+    @Test
+    void testPatchBook_Conflict() throws Exception {
+        when(bookService.patchBook(eq(1L), eq(2L), any())).thenThrow(new BookVersionConflictException(1L, 2L, 5L));
+
+        mockMvc.perform(patch("/api/books/1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"title\":\"Тютюн\",\"version\":2}"))
+                .andExpect(status().isConflict()) // Някой друг е променил книгата.
+                .andExpect(header().string("ETag", "\"book-1-5\""));
+    }
+
+    @Test
+    void testPatchBook_WithoutVersion() throws Exception {
+        mockMvc.perform(patch("/api/books/1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"title\":\"Тютюн\"}"))
+                .andExpect(status().isPreconditionRequired()); // Без версия не презаписваме сляпо.
+
+        verify(bookService, never()).patchBook(any(), any(), any());
+    }
+
+    @Test
+    void testUpdateBook_VersionFromIfMatch() throws Exception {
+        when(bookService.updateBook(eq(1L), eq(2L), any()))
+                .thenReturn(Optional.of(new BookDTO(1L, "Тютюн", "111", "Димитър Димов", 3L)));
+
+        mockMvc.perform(put("/api/books/1")
+                        .header("If-Match", "\"book-1-2\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"title\":\"Тютюн\",\"isbn\":\"111\",\"author\":{\"name\":\"Димитър Димов\"}}"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"book-1-3\"")); // Новата версия.
+    }
+
+    @Test
+    void testUpdateBook_Conflict() throws Exception {
+        when(bookService.updateBook(eq(1L), eq(2L), any())).thenThrow(new BookVersionConflictException(1L, 2L, 5L));
+
+        mockMvc.perform(put("/api/books/1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"title\":\"Тютюн\",\"isbn\":\"111\",\"author\":{\"name\":\"Димитър Димов\"},\"version\":2}"))
+                .andExpect(status().isConflict()) // Някой друг е променил книгата.
+                .andExpect(header().string("ETag", "\"book-1-5\""));
+    }
+
+    @Test
+    void testDeleteBooks_ByIds() throws Exception {
+        when(bookService.deleteBooks(List.of(1L, 2L, 3L))).thenReturn(2);
+
+        mockMvc.perform(delete("/api/books").param("ids", "1,2,3"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.deleted").value(2)); // Броят реално изтрити книги.
+    }
+
+    @Test
+    void testDeleteBooks_WithoutFilter() throws Exception {
+        mockMvc.perform(delete("/api/books"))
+                .andExpect(status().isBadRequest()); // Целият каталог не се трие без филтър.
+
+        verify(bookService, never()).deleteBooks(any());
+    }
+}
@@ -0,0 +1,49 @@
+package bg.home.books.web;
+
+import bg.home.books.service.event.BookChangedEvent;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HomePageCacheTest {
+
+    private final HomePageCache cache = new HomePageCache(100);
+    private final AtomicInteger renders = new AtomicInteger(); // Брой рендерирания.
+
+    @Test
+    void testPageIsRenderedOncePerCatalogVersion() {
+        cache.get("catalog-1", "id|null|50", this::render);
+        cache.get("catalog-1", "id|null|50", this::render);
+        assertEquals(1, renders.get()); // Второто показване идва от кеша.
+
+        cache.get("catalog-2", "id|null|50", this::render); // Каталогът е променен - нова версия.
+        assertEquals(2, renders.get());
+    }
+
+    @Test
+    void testPossiblyStalePageIsNotCached() {
+        RenderedBookPage page = cache.get("catalog-3", "id|null|50", this::render, readStart -> true);
+
+        assertNotNull(page); // Страницата се показва,
+        assertEquals(0, cache.size()); // но не се пази под новата версия.
+        cache.get("catalog-3", "id|null|50", this::render, readStart -> false);
+        assertEquals(2, renders.get());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void testBookChangeClearsCache() {
+        cache.get("catalog-1", "title|null|50", this::render);
+
+        cache.onBookChanged(BookChangedEvent.deleted(1L));
+
+        assertEquals(0, cache.size()); // Всички страници са изхвърлени.
+    }
+
+    private RenderedBookPage render() {
+        renders.incrementAndGet();
+        return new RenderedBookPage("<tr></tr>", null, null);
+    }
+}